@@ -1,4 +1,65 @@
 #!/bin/sh
 
 BASEDIR="`dirname $0`"
-java -cp "${BASEDIR}/target/main" com.github.pfumagalli.demavenizer.Main "${@}"
+SERVER="http://127.0.0.1:${DEMAVENIZER_PORT:-8642}"
+TOKEN_FILE="${DEMAVENIZER_TOKEN_FILE:-${HOME}/.demavenizer/daemon.token}"
+
+local_run() {
+  exec java -cp "${BASEDIR}/target/main" com.github.pfumagalli.demavenizer.Main "${@}"
+}
+
+# Ask a running daemon (started with "-daemon"), the token never shows up in "ps"
+remote_curl() {
+  printf 'header = "X-Demavenizer-Token: %s"\n' "${TOKEN}" | curl -s -K - "${@}"
+}
+
+# Returning non-zero on errors
+remote_run() {
+  OUTPUT="`mktemp`"
+  STATUS="`remote_curl -o "${OUTPUT}" -w '%{http_code}' "${@}"`"
+  cat "${OUTPUT}"
+  rm -f "${OUTPUT}"
+  test "${STATUS}" = "200"
+}
+
+# The daemon translates without previews or confirmations: only when asked to
+test "${DEMAVENIZER_DAEMON}" = "1" || local_run "${@}"
+
+# No curl, no token or no daemon? Just do everything in process
+command -v curl > /dev/null 2>&1 || local_run "${@}"
+TOKEN="`cat "${TOKEN_FILE}" 2> /dev/null`"
+test -n "${TOKEN}" || local_run "${@}"
+remote_curl -f -o /dev/null "${SERVER}/status" || local_run "${@}"
+
+# Only the simple forms are served remotely, anything else runs locally
+for ARG in "${@}" ; do
+  case "${ARG}" in
+    -update|-transitive|-latest|-mappings) ;;
+    -*) local_run "${@}" ;;
+  esac
+done
+
+UPDATE="false"
+TRANSITIVE="false"
+while test $# -gt 0 ; do
+  case "${1}" in
+    -update)     UPDATE="true" ;;
+    -transitive) TRANSITIVE="true" ;;
+    -latest)     remote_run --get --data-urlencode "id=${2}" "${SERVER}/latest" ; exit $? ;;
+    -mappings)   remote_run --get "${SERVER}/mappings" ; exit $? ;;
+    *)           break ;;
+  esac
+  shift
+done
+
+test $# -gt 0 || local_run -help
+
+if test $# -gt 1 ; then
+  remote_run --data-urlencode "id=${1}" --data-urlencode "ivy=${2}" \
+             --data "update=${UPDATE}" --data "transitive=${TRANSITIVE}" \
+             "${SERVER}/translate"
+else
+  remote_run --data-urlencode "id=${1}" \
+             --data "update=${UPDATE}" --data "transitive=${TRANSITIVE}" \
+             "${SERVER}/translate"
+fi
@@ -10,18 +10,21 @@ import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.github.pfumagalli.demavenizer.parser.Expression;
 
 public class Configuration extends AbstractMap<String, String> {
 
     private final Map<String, String> entries = new TreeMap<>();
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
     private URI location;
 
     public Configuration()
@@ -48,26 +51,46 @@ public class Configuration extends AbstractMap<String, String> {
         properties.load(new InputStreamReader(input, Charset.forName("UTF8")));
         for (final Entry<Object, Object> entry: properties.entrySet())
             entries.put(entry.getKey().toString(), entry.getValue().toString());
+        invalidate();
     }
 
-    @Override
-    public String get(Object key) {
-        if (key == null) return null;
-        final String value = entries.get(key);
-        if (value == null) return null;
-        return Expression.parse(value, location).evaluate(this);
+    /* Any change might affect any resolved value */
+    private void invalidate() {
+        expressions.clear();
+        resolved.clear();
     }
 
-    public String getResolved(Object key, Map<?, ?> extra) {
-        if (key == null) return null;
+    /* Each raw value gets parsed once, until it changes */
+    private Expression expression(Object key) {
+        Expression expression = expressions.get(key);
+        if (expression != null) return expression;
+
         final String value = entries.get(key);
         if (value == null) return null;
+        expression = Expression.parse(value, location);
+        expressions.put(key.toString(), expression);
+        return expression;
+    }
 
-        final Map<Object, Object> map = new HashMap<Object, Object>();
-        map.putAll(entries);
-        map.putAll(extra);
+    /* Values only depend on other entries (and system properties), so resolve them once */
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) return null;
+        final String cached = resolved.get(key);
+        if (cached != null) return cached;
+
+        final Expression expression = expression(key);
+        if (expression == null) return null;
+        final String value = expression.evaluate(this);
+        if (value != null) resolved.put((String) key, value);
+        return value;
+    }
 
-        return Expression.parse(value, location).evaluate(map);
+    public String getResolved(Object key, Map<?, ?> extra) {
+        if (key == null) return null;
+        final Expression expression = expression(key);
+        if (expression == null) return null;
+        return expression.evaluate(new Layered(extra));
     }
 
     public String getUnresolved(Object key) {
@@ -76,7 +99,11 @@ public class Configuration extends AbstractMap<String, String> {
 
     @Override
     public String put(String key, String value) {
-        return entries.put(key, value);
+        try {
+            return entries.put(key, value);
+        } finally {
+            invalidate();
+        }
     }
 
     @Override
@@ -87,14 +114,14 @@ public class Configuration extends AbstractMap<String, String> {
             public Iterator<Entry<String, String>> iterator() {
                 final Iterator<Entry<String, String>> iterator = entries.entrySet().iterator();
                 return new Iterator<Entry<String, String>>() {
-                    @Override public void remove() { iterator.remove(); }
+                    @Override public void remove() { iterator.remove(); invalidate(); }
                     @Override public boolean hasNext() { return iterator.hasNext(); }
                     @Override public Entry<String, String> next() {
                         final Entry<String, String> entry = iterator.next();
                         return new Entry<String, String>() {
                             @Override public String getKey() { return entry.getKey(); }
                             @Override public String getValue() { return get(entry.getKey()); }
-                            @Override public String setValue(String value) { return entry.setValue(value); }
+                            @Override public String setValue(String value) { try { return entry.setValue(value); } finally { invalidate(); } }
                         };
                     }
 
@@ -109,4 +136,72 @@ public class Configuration extends AbstractMap<String, String> {
         };
     }
 
+    /* ====================================================================== */
+
+    /* Extra values over the resolved configuration, without copying either */
+    private final class Layered extends AbstractMap<Object, Object> {
+
+        private final Map<?, ?> extra;
+
+        private Layered(Map<?, ?> extra) {
+            this.extra = extra;
+        }
+
+        @Override
+        public Object get(Object key) {
+            final Object value = extra.get(key);
+            if ((value != null) || extra.containsKey(key)) return value;
+            return Configuration.this.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return extra.containsKey(key) || entries.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return new AbstractSet<Entry<Object, Object>>() {
+
+                @Override
+                public Iterator<Entry<Object, Object>> iterator() {
+                    final Iterator<? extends Entry<?, ?>> extras = extra.entrySet().iterator();
+                    final Iterator<String> keys = entries.keySet().iterator();
+                    return new Iterator<Entry<Object, Object>>() {
+
+                        private Entry<Object, Object> next = advance();
+
+                        /* All extras first, then all entries they don't shadow */
+                        private Entry<Object, Object> advance() {
+                            if (extras.hasNext()) {
+                                final Entry<?, ?> entry = extras.next();
+                                return new SimpleImmutableEntry<Object, Object>(entry.getKey(), entry.getValue());
+                            }
+                            while (keys.hasNext()) {
+                                final String key = keys.next();
+                                if (!extra.containsKey(key)) return new SimpleImmutableEntry<Object, Object>(key, Configuration.this.get(key));
+                            }
+                            return null;
+                        }
+
+                        @Override public boolean hasNext() { return next != null; }
+                        @Override public Entry<Object, Object> next() {
+                            if (next == null) throw new NoSuchElementException();
+                            final Entry<Object, Object> current = next;
+                            next = advance();
+                            return current;
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int size = extra.size();
+                    for (final String key: entries.keySet()) if (!extra.containsKey(key)) size ++;
+                    return size;
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,290 @@
+package com.github.pfumagalli.demavenizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+
+import com.github.pfumagalli.demavenizer.Scheduler.Result;
+import com.github.pfumagalli.demavenizer.ivy.DependenciesException;
+import com.github.pfumagalli.demavenizer.ivy.Marker;
+import com.github.pfumagalli.demavenizer.maven.Dependency;
+import com.github.pfumagalli.demavenizer.maven.Identifier;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/* A resident translator keeping repository, mappings and licenses warm */
+public class Daemon {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String TOKEN_HEADER = "X-Demavenizer-Token";
+
+    private final Translator translator;
+    private final Scheduler scheduler;
+    private final HttpServer server;
+    private final File tokenFile;
+    private final byte token[];
+
+    public Daemon(Translator translator, int port, int threads, File tokenFile)
+    throws IOException {
+        assert (translator != null): "Null translator";
+        assert (tokenFile != null): "Null token file";
+        this.translator = translator;
+        this.tokenFile = tokenFile;
+        scheduler = new Scheduler(translator, threads);
+
+        /* Only those who can read our token file (the user) get served */
+        final byte random[] = new byte[32];
+        new SecureRandom().nextBytes(random);
+        final StringBuilder builder = new StringBuilder();
+        for (final byte b: random) builder.append(String.format("%02x", b & 0xFF));
+        token = builder.toString().getBytes(UTF8);
+        writeToken(tokenFile, token);
+
+        /* Local clients only, this is not meant to be exposed */
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(Executors.newFixedThreadPool(threads));
+        server.createContext("/status", new Handler() {
+            @Override
+            String handle(Map<String, String> parameters) {
+                return "OK";
+            }
+        });
+        server.createContext("/translate", new Handler("POST") {
+            @Override
+            String handle(Map<String, String> parameters)
+            throws Exception {
+                return translate(parameters);
+            }
+        });
+        server.createContext("/latest", new Handler() {
+            @Override
+            String handle(Map<String, String> parameters) {
+                return latest(parameters);
+            }
+        });
+        server.createContext("/mappings", new Handler() {
+            @Override
+            String handle(Map<String, String> parameters) {
+                return mappings();
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        Log.info("Daemon listening on " + server.getAddress());
+    }
+
+    public void stop() {
+        server.stop(0);
+        if (!tokenFile.delete()) Log.warn("Unable to delete token file " + tokenFile);
+    }
+
+    /* Created afresh, readable and writable by the owner only, before writing the token */
+    private static void writeToken(File file, byte token[])
+    throws IOException {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create directory " + directory);
+
+        Files.deleteIfExists(file.toPath());
+        if (Files.getFileStore(directory.toPath()).supportsFileAttributeView("posix")) {
+            Files.createFile(file.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file.toPath());
+            if (!(file.setReadable(false, false) && file.setReadable(true, true) &&
+                  file.setWritable(false, false) && file.setWritable(true, true)))
+                throw new IOException("Unable to restrict permissions of " + file);
+        }
+        Files.write(file.toPath(), token);
+    }
+
+    /* ====================================================================== */
+
+    private String translate(Map<String, String> parameters)
+    throws InterruptedException {
+        final String mavenId = required(parameters, "id");
+        final String ivyModule = parameters.get("ivy");
+        final boolean update = Boolean.parseBoolean(parameters.get("update"));
+        final boolean transitive = Boolean.parseBoolean(parameters.get("transitive"));
+
+        final List<String[]> entries = Collections.singletonList(ivyModule == null ?
+                                                                 new String[] { mavenId } :
+                                                                 new String[] { mavenId, ivyModule });
+        final List<Result> results = transitive ? scheduler.translateTransitively(entries, update) :
+                                                  scheduler.translate(entries, update);
+
+        boolean failed = false;
+        final StringBuilder builder = new StringBuilder();
+        for (final Result result: results) {
+            if (result.isSuccessful()) {
+                builder.append("OK     ").append(result.getMavenId()).append(" -> ").append(result.getIvyModule()).append('\n');
+                continue;
+            }
+
+            failed = true;
+            final Throwable failure = result.getFailure();
+            builder.append("FAILED ").append(result.getMavenId()).append(": ").append(failure.getMessage()).append('\n');
+            if (failure instanceof DependenciesException) {
+                for (final Dependency dependency: ((DependenciesException) failure).getMissingDependencies())
+                    builder.append("       -> ").append(dependency.asString()).append('\n');
+            }
+        }
+
+        if (failed) throw new RequestException(500, builder.toString());
+        return builder.toString();
+    }
+
+    private String latest(Map<String, String> parameters) {
+        final String mavenId = required(parameters, "id");
+        final Marker marker = translator.getMapper().getLatest(mavenId);
+        if (marker == null) throw new RequestException(404, "Unable to locate " + mavenId + " in repository\n");
+        return marker.getIdentifier().asString() + " -> " + marker.asString() + "\n";
+    }
+
+    private String mappings() {
+        final StringBuilder builder = new StringBuilder();
+        for (final Entry<Identifier, Marker> entry: translator.getMapper().getMappings().entrySet())
+            builder.append(entry.getKey().asString()).append(" -> ").append(entry.getValue().asString()).append('\n');
+        return builder.toString();
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        final String value = parameters.get(name);
+        if ((value == null) || value.trim().isEmpty())
+            throw new RequestException(400, "Missing parameter \"" + name + "\"\n");
+        return value.trim();
+    }
+
+    /* ====================================================================== */
+
+    private static class RequestException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private abstract class Handler implements HttpHandler {
+
+        private final String method;
+
+        private Handler() {
+            this("GET");
+        }
+
+        /* Side effects only on POST, so that no link or redirect can trigger them */
+        private Handler(String method) {
+            this.method = method;
+        }
+
+        abstract String handle(Map<String, String> parameters)
+        throws Exception;
+
+        @Override
+        public void handle(HttpExchange exchange)
+        throws IOException {
+            int status = 200;
+            String body;
+            try {
+                if (!isLoopback(exchange.getRequestHeaders().getFirst("Host")))
+                    throw new RequestException(403, "Invalid host\n");
+                final String received = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+                if ((received == null) || !MessageDigest.isEqual(token, received.trim().getBytes(UTF8)))
+                    throw new RequestException(403, "Invalid or missing token\n");
+                if (!method.equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    throw new RequestException(405, "Method not allowed, use " + method + "\n");
+                }
+
+                body = handle(parameters("POST".equals(method) ? read(exchange.getRequestBody()) :
+                                                                 exchange.getRequestURI().getRawQuery()));
+            } catch (final RequestException exception) {
+                status = exception.status;
+                body = exception.getMessage();
+            } catch (final Exception exception) {
+                Log.error("Exception handling " + exchange.getRequestURI(), exception);
+                status = 500;
+                body = "ERROR  " + exception.getMessage() + "\n";
+            }
+
+            final byte bytes[] = body.getBytes(UTF8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            final OutputStream output = exchange.getResponseBody();
+            try {
+                output.write(bytes);
+            } finally {
+                output.close();
+            }
+        }
+
+        /* Refuse anything not addressed to us by loopback name (DNS rebinding) */
+        private boolean isLoopback(String host) {
+            if (host == null) return false;
+            host = host.trim().toLowerCase(Locale.ENGLISH);
+            if (host.startsWith("[")) {
+                final int close = host.indexOf(']');
+                if (close < 0) return false;
+                host = host.substring(1, close);
+            } else if (host.indexOf(':') >= 0) {
+                host = host.substring(0, host.indexOf(':'));
+            }
+            return "localhost".equals(host) || "127.0.0.1".equals(host) || "::1".equals(host);
+        }
+
+        private String read(InputStream input)
+        throws IOException {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                final byte buffer[] = new byte[4096];
+                int read;
+                while ((read = input.read(buffer)) >= 0) output.write(buffer, 0, read);
+            } finally {
+                input.close();
+            }
+            return new String(output.toByteArray(), UTF8);
+        }
+
+        private Map<String, String> parameters(String query)
+        throws UnsupportedEncodingException {
+            final Map<String, String> parameters = new HashMap<>();
+            if (query == null) return parameters;
+            for (final String pair: query.split("&")) {
+                if (pair.isEmpty()) continue;
+                final int equals = pair.indexOf('=');
+                if (equals < 0) {
+                    parameters.put(URLDecoder.decode(pair, "UTF-8"), "true");
+                } else {
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                                   URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+            return parameters;
+        }
+    }
+}
@@ -2,24 +2,29 @@ package com.github.pfumagalli.demavenizer;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 
-import com.github.pfumagalli.demavenizer.ivy.ArtifactType;
+import com.github.pfumagalli.demavenizer.Scheduler.Result;
 import com.github.pfumagalli.demavenizer.ivy.DependenciesException;
 import com.github.pfumagalli.demavenizer.ivy.Descriptor;
 import com.github.pfumagalli.demavenizer.ivy.Mapper;
 import com.github.pfumagalli.demavenizer.ivy.Marker;
 import com.github.pfumagalli.demavenizer.ivy.Serializer;
+import com.github.pfumagalli.demavenizer.maven.Cache;
 import com.github.pfumagalli.demavenizer.maven.Dependency;
 import com.github.pfumagalli.demavenizer.maven.Identifier;
-import com.github.pfumagalli.demavenizer.maven.Project;
 import com.github.pfumagalli.demavenizer.maven.Repository;
+import com.github.pfumagalli.demavenizer.net.Transport;
+import com.github.pfumagalli.demavenizer.net.URLConnectionTransport;
 import com.github.pfumagalli.demavenizer.parser.Expression;
 
 public class Main {
@@ -31,6 +36,8 @@ public class Main {
     private static void help(Configuration configuration) {
         Log.info("");
         Log.warn("Usage: " + Main.class.getName() + " [-options ...] <maven id> [ivy module]");
+        Log.warn("       " + Main.class.getName() + " [-options ...] -batch <file>");
+        Log.warn("       " + Main.class.getName() + " [-options ...] -daemon");
         Log.info("");
 
         int maxlen = 0;
@@ -49,6 +56,11 @@ public class Main {
         Log.info(String.format(format, "-library dir", "Locate the library in the specified directory (defaults to ${user.dir})"));
         Log.info(String.format(format, "-update",      "Update an already mapped library automatically fetching the latest version"));
         Log.info(String.format(format, "-fetch",       "Fetch binaries rather than simply linking them"));
+        Log.info(String.format(format, "-batch file",  "Translate all ids listed in the file (or \"-\" for stdin) without confirmation"));
+        Log.info(String.format(format, "-transitive",  "Also translate all missing dependencies, without confirmation"));
+        Log.info(String.format(format, "-latest id",   "Show the latest Ivy module mapped for the given maven id"));
+        Log.info(String.format(format, "-mappings",    "List all known Maven to Ivy mappings"));
+        Log.info(String.format(format, "-daemon",      "Stay resident, serving requests on localhost (see daemon.port)"));
         Log.info(String.format(format, "-help",        "Show this help page"));
         Log.info("");
         Log.warn("Properties:");
@@ -69,6 +81,11 @@ public class Main {
 
         /* Process command line options */
         boolean update = false;
+        boolean transitive = false;
+        boolean daemon = false;
+        boolean mappings = false;
+        String latest = null;
+        String batch = null;
         int x = 0;
         while (x < args.length) {
             if ("-help".equals(args[x])) help(configuration);
@@ -76,107 +93,80 @@ public class Main {
             else if ("-fetch".equals(args[x])) configuration.put("artifacts.fetch", "true");
             else if ("-library".equals(args[x])) configuration.put("library.dir", args[++x]);
             else if ("-config".equals(args[x])) configuration.put("config.file", args[++x]);
+            else if ("-batch".equals(args[x])) batch = args[++x];
+            else if ("-transitive".equals(args[x])) transitive = true;
+            else if ("-daemon".equals(args[x])) daemon = true;
+            else if ("-latest".equals(args[x])) latest = args[++x];
+            else if ("-mappings".equals(args[x])) mappings = true;
             else break;
             x ++;
         }
 
         /* Do we still have some options? */
-        if (args.length <= x) help(configuration);
+        if ((batch == null) && (latest == null) && !daemon && !mappings && (args.length <= x)) help(configuration);
 
         /* Merge configurations, if they exist */
         configuration.merge(configuration.get("config.file"));
 
-        /* Repository URL */
-        final String mavenUrlProperty = configuration.get("maven.url");
-        if (mavenUrlProperty == null) {
-            Log.error("Property \"maven.url\" not set");
+        /* Set up everything we need for translating */
+        final Translator translator = initialize(configuration);
+        if (translator == null) System.exit(1);
+
+        /* Stay resident, serving requests */
+        if (daemon) {
+            /* Upstream keeps releasing, and we keep running: expire metadata (seconds) and bound caches */
+            translator.getRepository().setLimits(Long.parseLong(configuration.get("daemon.metadata.expiry").trim()) * 1000,
+                                                 Integer.parseInt(configuration.get("daemon.cache.capacity").trim()));
+            new Daemon(translator,
+                       Integer.parseInt(configuration.get("daemon.port").trim()),
+                       Integer.parseInt(configuration.get("batch.threads").trim()),
+                       new File(configuration.get("daemon.token.file"))).start();
             return;
         }
-        final Repository repository = new Repository(URI.create(mavenUrlProperty));
 
-        /* Libraries directory */
-        final String librariesDirProperty = configuration.get("library.dir");
-        if (librariesDirProperty == null) {
-            Log.error("Property \"libraries.dir\" not set");
-            return;
-        }
-        final File librariesDir = new File(librariesDirProperty);
-        if (!librariesDir.isDirectory()) {
-            Log.error("Libraries directory " + librariesDir + " not found");
+        /* Simple queries */
+        if (latest != null) {
+            final Marker marker = translator.getMapper().getLatest(latest);
+            if (marker == null) {
+                Log.error("Unable to locate " + latest + " in repository");
+                System.exit(2);
+            }
+            System.out.println(marker.getIdentifier().asString() + " -> " + marker.asString());
             return;
         }
 
-        /* Maven to Maven mappings file */
-        final String mappingsFileProperty = configuration.get("mappings.file");
-        if (mappingsFileProperty == null) {
-            Log.error("Property \"mappings.file\" not set");
+        if (mappings) {
+            for (final Entry<Identifier, Marker> entry: translator.getMapper().getMappings().entrySet())
+                System.out.println(entry.getKey().asString() + " -> " + entry.getValue().asString());
             return;
         }
-        final File mappingsFile = new File(mappingsFileProperty);
-        if (!mappingsFile.isFile()) {
-            Log.error("Mappings file " + mappingsFile + " not found");
-            return;
-        }
-
-        /* Create our mapper */
-        final Mapper mapper = new Mapper(librariesDir, mappingsFile);
 
-        /* Licenses file */
-        final String licensesFileProperty = configuration.get("licenses.file");
-        if (licensesFileProperty == null) {
-            Log.error("Property \"licenses.file\" not set");
+        /* Batches and transitive translations run unattended */
+        if ((batch != null) || transitive) {
+            final List<String[]> entries = batch != null ? read(batch) :
+                                           Collections.singletonList(Arrays.copyOfRange(args, x, Math.min(x + 2, args.length)));
+            final Scheduler scheduler = new Scheduler(translator, Integer.parseInt(configuration.get("batch.threads").trim()));
+            final List<Result> results = transitive ? scheduler.translateTransitively(entries, update) :
+                                                      scheduler.translate(entries, update);
+            if (!summarize(results)) System.exit(2);
             return;
         }
-        final File licensesFile = new File(licensesFileProperty);
-        if (!licensesFile.isFile()) {
-            Log.error("Licenses file " + licensesFile + " not found");
-            return;
-        }
-        License.load(licensesFile);
-
-        /* If we're updating to the last version, we have some work to do */
-        final Project project;
-        final Marker translated;
-
-        if (update) {
-
-            /* Get the latest version of the required module */
-            final Marker marker = mapper.getLatest(args[x++]);
-            if (marker == null) {
-                Log.error("Unable to locate " + args[x - 1] + " in repository");
-                return;
-            }
-
-            /* Start a project from the original identifer (unversioned) */
-            project = repository.getProject(marker.getIdentifier().unversioned());
-
-            /* If we have specified a translation, use it, otherwise default to the marker */
-            if (x < args.length) {
-                translated = new Marker(project, args[x]);
-            } else {
-                translated = new Marker(project, marker.getOrganisation() + "#" + marker.getModule());
-            }
-
-        } else {
-
-            /* We're not updating, so we construct everything as normal */
-            project = repository.getProject(new Identifier(args[x++]));
-            translated = x < args.length ? new Marker(project, args[x]) : null;
-        }
 
         /* Create the descriptor */
         final Descriptor descriptor;
         try {
-            descriptor = new Descriptor(project, mapper, translated);
+            final String mavenId = args[x++];
+            descriptor = translator.describe(mavenId, x < args.length ? args[x] : null, update);
         } catch (final DependenciesException exception) {
             Log.error(exception.getMessage());
             for (final Dependency dependency: exception.getMissingDependencies())
             Log.error(" -> " + dependency.asString());
             return;
+        } catch (final IllegalArgumentException exception) {
+            Log.error(exception.getMessage());
+            return;
         }
 
-        Log.info("Translated Maven " + project.asString() + " to Ivy " + descriptor.asString());
-
         /* Preview! */
         System.out.println();
         Serializer.toXml(System.out, descriptor, configuration);
@@ -184,7 +174,7 @@ public class Main {
         System.out.flush();
 
         /* Check the Ivy file */
-        final File file = new File(configuration.getResolved("artifacts.ivy.pattern", descriptor.asMap())).getCanonicalFile();
+        final File file = translator.getIvyFile(descriptor);
         if (file.exists()) {
             Log.error("Ivy file " + file + " already exists, double confirmation needed! [CRTL-C to exit]");
             new BufferedReader(new InputStreamReader(System.in)).readLine();
@@ -195,43 +185,129 @@ public class Main {
         if (descriptor.getArtifacts().isEmpty()) Log.error("No artifacts found");
         Log.warn("Write to " + file.getAbsolutePath() + " [CRTL-C to exit] ?");
         new BufferedReader(new InputStreamReader(System.in)).readLine();
-        file.getParentFile().mkdirs();
-
-        if (Boolean.parseBoolean(configuration.get("artifacts.fetch"))) {
-            for (final Entry<ArtifactType, URI> entry: descriptor.getArtifacts().entrySet()) {
-                final ArtifactType type = entry.getKey();
-                final URI uri = entry.getValue();
-                final File artifact = new File(type.getArtifactFile(configuration, descriptor)).getCanonicalFile();
-                fetch(uri, artifact);
-            }
+        translator.write(descriptor);
+    }
+
+    private static Translator initialize(Configuration configuration)
+    throws IOException {
+
+        /* The JDK keep-alive cache reads these once, before the first connection */
+        final int pooledConnections = Integer.parseInt(configuration.get("http.connections.pool").trim());
+        if (pooledConnections > 0) System.setProperty("http.maxConnections", Integer.toString(pooledConnections));
+        System.setProperty("http.keepAlive", "true");
+
+        /* HTTP transport shared by everyone */
+        Transport.setDefault(new URLConnectionTransport(Integer.parseInt(configuration.get("http.timeout.connect").trim()),
+                                                        Integer.parseInt(configuration.get("http.timeout.read").trim()),
+                                                        Integer.parseInt(configuration.get("http.connections.host").trim())));
+
+        /* Repository URL */
+        final String mavenUrlProperty = configuration.get("maven.url");
+        if (mavenUrlProperty == null) {
+            Log.error("Property \"maven.url\" not set");
+            return null;
+        }
+
+        /* Persistent POM cache, an empty directory disables it */
+        final String mavenCacheProperty = configuration.get("maven.cache.dir");
+        final Cache mavenCache = mavenCacheProperty == null || mavenCacheProperty.trim().isEmpty() ? null :
+                                 new Cache(new File(mavenCacheProperty.trim()));
+        final Repository repository = new Repository(URI.create(mavenUrlProperty), mavenCache);
+
+        /* Libraries directory */
+        final String librariesDirProperty = configuration.get("library.dir");
+        if (librariesDirProperty == null) {
+            Log.error("Property \"libraries.dir\" not set");
+            return null;
+        }
+        final File librariesDir = new File(librariesDirProperty);
+        if (!librariesDir.isDirectory()) {
+            Log.error("Libraries directory " + librariesDir + " not found");
+            return null;
+        }
+
+        /* Maven to Maven mappings file */
+        final String mappingsFileProperty = configuration.get("mappings.file");
+        if (mappingsFileProperty == null) {
+            Log.error("Property \"mappings.file\" not set");
+            return null;
+        }
+        final File mappingsFile = new File(mappingsFileProperty);
+        if (!mappingsFile.isFile()) {
+            Log.error("Mappings file " + mappingsFile + " not found");
+            return null;
+        }
+
+        /* Library index, an empty file name disables it */
+        final String libraryIndexProperty = configuration.get("library.index");
+        final File libraryIndex = libraryIndexProperty == null || libraryIndexProperty.trim().isEmpty() ? null :
+                                  new File(libraryIndexProperty.trim());
+
+        /* Create our mapper, optionally serving from a memory-mapped index */
+        final boolean libraryIndexMapped = Boolean.parseBoolean(configuration.get("library.index.mapped"));
+        if (libraryIndexMapped && (libraryIndex == null)) {
+            Log.error("Property \"library.index.mapped\" requires \"library.index\"");
+            return null;
+        }
+        final Mapper mapper = new Mapper(librariesDir, libraryIndex, libraryIndexMapped, mappingsFile);
+
+        /* Licenses file */
+        final String licensesFileProperty = configuration.get("licenses.file");
+        if (licensesFileProperty == null) {
+            Log.error("Property \"licenses.file\" not set");
+            return null;
+        }
+        final File licensesFile = new File(licensesFileProperty);
+        if (!licensesFile.isFile()) {
+            Log.error("Licenses file " + licensesFile + " not found");
+            return null;
         }
+        License.load(licensesFile);
 
-        final OutputStream out = new FileOutputStream(file);
-        Serializer.toXml(out, descriptor, configuration);
-        out.flush();
-        out.close();
+        return new Translator(configuration, repository, mapper);
     }
 
-    private static void fetch(URI uri, File file)
-    throws IOException {
-        Log.info("Fetching " + uri);
-        Log.info("      to " + file);
+    /* ====================================================================== */
 
-        final InputStream input = uri.toURL().openStream();
-        final OutputStream output = new FileOutputStream(file);
-        final byte buffer[] = new byte[4096];
-        long total = 0;
-        int size;
-        while ((size = input.read(buffer)) >= 0) {
-            output.write(buffer, 0, size);
-            total += size;
+    /* Read "<maven id> [ivy module]" lines from a file (or "-" for stdin) */
+    private static List<String[]> read(String source)
+    throws IOException {
+        final List<String[]> entries = new ArrayList<>();
+        final BufferedReader reader = "-".equals(source) ?
+                                      new BufferedReader(new InputStreamReader(System.in, Charset.forName("UTF-8"))) :
+                                      new BufferedReader(new InputStreamReader(new FileInputStream(source), Charset.forName("UTF-8")));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                entries.add(line.split("\\s+"));
+            }
+        } finally {
+            reader.close();
         }
+        return entries;
+    }
 
-        output.flush();
-        output.close();
-        input.close();
+    private static boolean summarize(List<Result> results) {
+        int failures = 0;
+        for (final Result result: results) if (!result.isSuccessful()) failures ++;
 
-        Log.info("   total " + total + " bytes");
+        Log.info("");
+        Log.warn("Summary: " + (results.size() - failures) + " translated, " + failures + " failed");
+        for (final Result result: results) {
+            if (result.isSuccessful()) {
+                Log.info("  OK     " + result.getMavenId() + " -> " + result.getIvyModule());
+                continue;
+            }
 
+            final Throwable failure = result.getFailure();
+            Log.error("  FAILED " + result.getMavenId() + ": " + failure.getMessage());
+            if (failure instanceof DependenciesException) {
+                for (final Dependency dependency: ((DependenciesException) failure).getMissingDependencies())
+                    Log.error("         -> " + dependency.asString());
+            }
+        }
+        return failures == 0;
     }
 }
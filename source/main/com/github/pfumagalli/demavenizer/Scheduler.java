@@ -0,0 +1,313 @@
+package com.github.pfumagalli.demavenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+import com.github.pfumagalli.demavenizer.ivy.DependenciesException;
+import com.github.pfumagalli.demavenizer.ivy.Descriptor;
+import com.github.pfumagalli.demavenizer.maven.Dependency;
+import com.github.pfumagalli.demavenizer.maven.Identifier;
+import com.github.pfumagalli.demavenizer.maven.Project;
+
+public class Scheduler {
+
+    private final Set<File> files = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+    private final Translator translator;
+    private final int threads;
+
+    public Scheduler(Translator translator, int threads) {
+        assert (translator != null): "Null translator";
+        if (threads < 1) throw new IllegalArgumentException("Invalid number of threads " + threads);
+        this.translator = translator;
+        this.threads = threads;
+    }
+
+    /* ====================================================================== */
+
+    /* Translate each "<maven id> [ivy module]" entry on its own, in parallel */
+    public List<Result> translate(List<String[]> entries, final boolean update)
+    throws InterruptedException {
+        Log.info("Translating " + entries.size() + " artifacts with " + threads + " workers");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<String>> futures = new ArrayList<>(entries.size());
+        try {
+            for (final String[] entry: entries) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call()
+                    throws IOException {
+                        return write(translator.describe(entry[0], entry.length > 1 ? entry[1] : null, update));
+                    }
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        final List<Result> results = new ArrayList<>(entries.size());
+        for (int x = 0; x < entries.size(); x ++) try {
+            results.add(new Result(entries.get(x)[0], futures.get(x).get(), null));
+        } catch (final ExecutionException exception) {
+            results.add(new Result(entries.get(x)[0], null, exception.getCause()));
+        }
+        return results;
+    }
+
+    /* Translate all entries and all their missing dependencies, bottom-up */
+    public List<Result> translateTransitively(List<String[]> entries, boolean update)
+    throws InterruptedException {
+        final Map<String, Task> tasks = discover(entries, update);
+        final List<Task> ordered = sort(tasks);
+        Log.info("Translating " + ordered.size() + " artifacts (" + entries.size() + " requested) with " + threads + " workers");
+
+        /* Every task waits for its dependencies, independent subtrees run in parallel */
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (final Task task: ordered) {
+                final CompletableFuture<?>[] dependencies = new CompletableFuture<?>[task.dependencies.size()];
+                for (int x = 0; x < dependencies.length; x ++) dependencies[x] = tasks.get(task.dependencies.get(x)).future;
+
+                CompletableFuture.allOf(dependencies).handleAsync(new BiFunction<Void, Throwable, Void>() {
+                    @Override
+                    public Void apply(Void ignored, Throwable throwable) {
+                        try {
+                            task.future.complete(execute(task, tasks));
+                        } catch (final Throwable failure) {
+                            task.future.completeExceptionally(failure);
+                        }
+                        return null;
+                    }
+                }, executor);
+            }
+
+            /* Report in discovery order, requested entries first */
+            final List<Result> results = new ArrayList<>(tasks.size());
+            for (final Task task: tasks.values()) try {
+                results.add(new Result(task.mavenId, task.future.get(), null));
+            } catch (final ExecutionException exception) {
+                results.add(new Result(task.mavenId, null, exception.getCause()));
+            }
+            return results;
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /* ====================================================================== */
+
+    private String write(Descriptor descriptor)
+    throws IOException {
+        final File file = translator.getIvyFile(descriptor);
+        if (!files.add(file)) throw new IllegalStateException("Ivy file " + file + " already being written");
+        try {
+            if (file.exists()) throw new IllegalStateException("Ivy file " + file + " already exists");
+            if (descriptor.getLicenses().isEmpty()) Log.error("No licenses found for " + descriptor.asString());
+            if (descriptor.getArtifacts().isEmpty()) Log.error("No artifacts found for " + descriptor.asString());
+            translator.write(descriptor);
+            translator.getMapper().register(descriptor);
+            return descriptor.asString();
+        } finally {
+            files.remove(file);
+        }
+    }
+
+    private String execute(Task task, Map<String, Task> tasks)
+    throws IOException {
+        for (final String dependency: task.dependencies) {
+            if (tasks.get(dependency).future.isCompletedExceptionally())
+                throw new IllegalStateException("Dependency " + dependency + " failed");
+        }
+        if (task.failure instanceof RuntimeException) throw (RuntimeException) task.failure;
+        if (task.failure instanceof Error) throw (Error) task.failure;
+
+        /* Leaves were described during discovery, others now see their dependencies */
+        final Descriptor descriptor = task.descriptor != null ? task.descriptor :
+                                      translator.describe(task.mavenId, task.ivyModule, task.update);
+        return write(descriptor);
+    }
+
+    /* Walk the graph of missing dependencies level by level, each level in parallel */
+    private Map<String, Task> discover(List<String[]> entries, boolean update)
+    throws InterruptedException {
+        final Map<String, Task> tasks = new LinkedHashMap<>();
+        List<Task> frontier = new ArrayList<>();
+        for (final String[] entry: entries) {
+            final Task task = new Task(entry[0], entry.length > 1 ? entry[1] : null, update);
+            if (tasks.containsKey(task.key)) continue;
+            tasks.put(task.key, task);
+            frontier.add(task);
+        }
+
+        while (!frontier.isEmpty()) {
+            final List<Future<?>> futures = new ArrayList<>(frontier.size());
+            for (final Task task: frontier) {
+                futures.add(Workers.executor().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (task.failure != null) return;
+                        try {
+                            task.descriptor = translator.describe(task.mavenId, task.ivyModule, task.update);
+                        } catch (final DependenciesException exception) {
+                            /* Unresolvable dependencies fail this task only, not the whole discovery */
+                            try {
+                                resolve(task, exception.getMissingDependencies());
+                            } catch (final RuntimeException | Error failure) {
+                                task.failure = failure;
+                            }
+                        } catch (final RuntimeException | Error failure) {
+                            task.failure = failure;
+                        }
+                    }
+                }));
+            }
+            for (final Future<?> future: futures) try {
+                future.get();
+            } catch (final ExecutionException exception) {
+                throw new IllegalStateException("Unexpected exception in discovery", exception.getCause());
+            }
+
+            final List<Task> next = new ArrayList<>();
+            for (final Task task: frontier) {
+                for (final String dependency: task.dependencies) {
+                    if (tasks.containsKey(dependency)) continue;
+                    final Task child = new Task(dependency, null, false);
+                    tasks.put(dependency, child);
+                    next.add(child);
+                }
+            }
+            frontier = next;
+        }
+        return tasks;
+    }
+
+    /* Record the keys of a task's missing dependencies */
+    private void resolve(Task task, Iterable<Dependency> missing) {
+        /* Resolve all unversioned dependencies at once, rather than one after the other */
+        final List<Dependency> unversioned = new ArrayList<>();
+        for (final Dependency dependency: missing)
+            if (dependency.getVersion() == null) unversioned.add(dependency);
+        final Map<Identifier, Project> projects = translator.getRepository().getProjects(unversioned);
+
+        for (final Dependency dependency: missing) {
+            /* Key on the version we'll really get, so "g#a" and "g#a#1.0" merge */
+            final String version = dependency.getVersion() != null ? dependency.getVersion() :
+                                   projects.get(dependency).getVersion();
+            final String key = new Identifier(dependency.getGroupId(), dependency.getArtifactId(), version).asString();
+            if (!task.dependencies.contains(key)) task.dependencies.add(key);
+        }
+    }
+
+    /* Kahn's algorithm: whatever can't be ordered sits on a cycle */
+    private List<Task> sort(Map<String, Task> tasks) {
+        final Map<String, Integer> pending = new HashMap<>();
+        final Map<String, List<Task>> dependants = new HashMap<>();
+        final Deque<Task> ready = new ArrayDeque<>();
+
+        for (final Task task: tasks.values()) {
+            pending.put(task.key, task.dependencies.size());
+            if (task.dependencies.isEmpty()) ready.add(task);
+            for (final String dependency: task.dependencies) {
+                List<Task> list = dependants.get(dependency);
+                if (list == null) dependants.put(dependency, list = new ArrayList<>());
+                list.add(task);
+            }
+        }
+
+        final List<Task> ordered = new ArrayList<>(tasks.size());
+        while (!ready.isEmpty()) {
+            final Task task = ready.remove();
+            ordered.add(task);
+            final List<Task> list = dependants.get(task.key);
+            if (list != null) for (final Task dependant: list) {
+                final int count = pending.get(dependant.key) - 1;
+                pending.put(dependant.key, count);
+                if (count == 0) ready.add(dependant);
+            }
+        }
+
+        for (final Task task: tasks.values()) {
+            if (pending.get(task.key) == 0) continue;
+            task.failure = new IllegalStateException("Cyclic dependencies involving " + task.mavenId);
+            task.dependencies.clear();
+            ordered.add(task);
+        }
+        return ordered;
+    }
+
+    /* ====================================================================== */
+
+    private static final class Task {
+
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private final List<String> dependencies = new ArrayList<>();
+        private final String key;
+        private final String mavenId;
+        private final String ivyModule;
+        private final boolean update;
+
+        private volatile Descriptor descriptor;
+        private volatile Throwable failure;
+
+        private Task(String mavenId, String ivyModule, boolean update) {
+            /* Normalize the key, but let invalid ids fail in their own task */
+            String key = mavenId;
+            try {
+                key = new Identifier(mavenId).asString();
+            } catch (final RuntimeException exception) {
+                failure = exception;
+            }
+            this.key = key;
+            this.mavenId = mavenId;
+            this.ivyModule = ivyModule;
+            this.update = update;
+        }
+    }
+
+    public static final class Result {
+
+        private final String mavenId;
+        private final String ivyModule;
+        private final Throwable failure;
+
+        private Result(String mavenId, String ivyModule, Throwable failure) {
+            this.mavenId = mavenId;
+            this.ivyModule = ivyModule;
+            this.failure = failure;
+        }
+
+        public String getMavenId() {
+            return mavenId;
+        }
+
+        public String getIvyModule() {
+            return ivyModule;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.pfumagalli.demavenizer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class Strings {
+
+    private Strings() {
+        throw new IllegalStateException();
+    }
+
+    /* ====================================================================== */
+
+    /* Group, artifact, organisation, module and element names repeat endlessly */
+    private static final Map<String, String> strings = new ConcurrentHashMap<>();
+    private static final int CAPACITY = 1 << 18;
+
+    public static String intern(String string) {
+        if (string == null) return null;
+        final String interned = strings.get(string);
+        if (interned != null) return interned;
+
+        /* Sharing saves memory but nobody relies on it, so a full pool simply starts over */
+        if (strings.size() >= CAPACITY) strings.clear();
+        final String previous = strings.putIfAbsent(string, string);
+        return previous == null ? string : previous;
+    }
+
+    public static int size() {
+        return strings.size();
+    }
+}
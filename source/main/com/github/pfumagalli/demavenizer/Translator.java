@@ -0,0 +1,132 @@
+package com.github.pfumagalli.demavenizer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map.Entry;
+
+import com.github.pfumagalli.demavenizer.ivy.ArtifactType;
+import com.github.pfumagalli.demavenizer.ivy.Descriptor;
+import com.github.pfumagalli.demavenizer.ivy.Mapper;
+import com.github.pfumagalli.demavenizer.ivy.Marker;
+import com.github.pfumagalli.demavenizer.ivy.Serializer;
+import com.github.pfumagalli.demavenizer.maven.Identifier;
+import com.github.pfumagalli.demavenizer.maven.Project;
+import com.github.pfumagalli.demavenizer.maven.Repository;
+import com.github.pfumagalli.demavenizer.net.Checksums;
+import com.github.pfumagalli.demavenizer.net.Downloader;
+import com.github.pfumagalli.demavenizer.net.Transport;
+
+public class Translator {
+
+    private final Configuration configuration;
+    private final Repository repository;
+    private final Mapper mapper;
+
+    public Translator(Configuration configuration, Repository repository, Mapper mapper) {
+        assert (configuration != null): "Null configuration";
+        assert (repository != null): "Null repository";
+        assert (mapper != null): "Null mapper";
+        this.configuration = configuration;
+        this.repository = repository;
+        this.mapper = mapper;
+    }
+
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    public Mapper getMapper() {
+        return mapper;
+    }
+
+    /* ====================================================================== */
+
+    /* Create the descriptor for a Maven id, optionally translated to an Ivy module */
+    public Descriptor describe(String mavenId, String ivyModule, boolean update) {
+
+        /* If we're updating to the last version, we have some work to do */
+        final Project project;
+        final Marker translated;
+
+        if (update) {
+
+            /* Get the latest version of the required module */
+            final Marker marker = mapper.getLatest(mavenId);
+            if (marker == null) throw new IllegalArgumentException("Unable to locate " + mavenId + " in repository");
+
+            /* Start a project from the original identifer (unversioned) */
+            project = repository.getProject(marker.getIdentifier().unversioned());
+
+            /* If we have specified a translation, use it, otherwise default to the marker */
+            if (ivyModule != null) {
+                translated = new Marker(project, ivyModule);
+            } else {
+                translated = new Marker(project, marker.getOrganisation() + "#" + marker.getModule());
+            }
+
+        } else {
+
+            /* We're not updating, so we construct everything as normal */
+            project = repository.getProject(new Identifier(mavenId));
+            translated = ivyModule != null ? new Marker(project, ivyModule) : null;
+        }
+
+        final Descriptor descriptor = new Descriptor(project, mapper, translated, configuration);
+        Log.info("Translated Maven " + project.asString() + " to Ivy " + descriptor.asString());
+        return descriptor;
+    }
+
+    public File getIvyFile(Descriptor descriptor)
+    throws IOException {
+        return new File(configuration.getResolved("artifacts.ivy.pattern", descriptor.asMap())).getCanonicalFile();
+    }
+
+    /* Fetch artifacts (if configured to do so) and write the Ivy file */
+    public File write(Descriptor descriptor)
+    throws IOException {
+        final File file = getIvyFile(descriptor);
+        file.getParentFile().mkdirs();
+
+        if (Boolean.parseBoolean(configuration.get("artifacts.fetch"))) {
+            final Downloader downloader = new Downloader(Transport.getDefault(),
+                                                         Integer.parseInt(configuration.get("artifacts.fetch.segments").trim()),
+                                                         Long.parseLong(configuration.get("artifacts.fetch.segments.threshold").trim()));
+            final Checksums checksums = new Checksums(Transport.getDefault(),
+                                                      configuration.get("artifacts.checksum.algorithms"),
+                                                      Checksums.Policy.valueOf(configuration.get("artifacts.checksum.policy").trim().toUpperCase()));
+            for (final Entry<ArtifactType, URI> entry: descriptor.getArtifacts().entrySet()) {
+                final ArtifactType type = entry.getKey();
+                final URI uri = entry.getValue();
+                final File artifact = new File(type.getArtifactFile(configuration, descriptor)).getCanonicalFile();
+                fetch(downloader, checksums, uri, artifact);
+            }
+        }
+
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            Serializer.toXml(out, descriptor, configuration);
+            out.flush();
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void fetch(Downloader downloader, Checksums checksums, URI uri, File file)
+    throws IOException {
+        Log.info("Fetching " + uri);
+        Log.info("      to " + file);
+
+        final long total = downloader.download(uri, file, checksums.verify(uri));
+
+        Log.info("   total " + total + " bytes");
+
+    }
+}
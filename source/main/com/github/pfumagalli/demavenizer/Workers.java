@@ -0,0 +1,50 @@
+package com.github.pfumagalli.demavenizer;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class Workers {
+
+    private Workers() {
+        throw new IllegalStateException();
+    }
+
+    /* ====================================================================== */
+
+    /* Most of our work blocks on the network, so threads are cheap and many */
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "demavenizer-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    });
+
+    public static ExecutorService executor() {
+        return executor;
+    }
+
+    public static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for task", exception);
+        } catch (final ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException("Exception executing task", cause);
+        }
+    }
+
+}
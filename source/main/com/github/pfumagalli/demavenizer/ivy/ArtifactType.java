@@ -1,16 +1,39 @@
 package com.github.pfumagalli.demavenizer.ivy;
 
-import com.github.pfumagalli.demavenizer.Configuration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
 
+import com.github.pfumagalli.demavenizer.Configuration;
 
-public enum ArtifactType {
 
-    BIN, SRC, DOC;
+public final class ArtifactType implements Comparable<ArtifactType> {
 
     private final String type;
+    private final int order;
+
+    private ArtifactType(String type, int order) {
+        this.type = type;
+        this.order = order;
+    }
+
+    /* All the artifact types listed in "artifacts.types", in order */
+    public static List<ArtifactType> values(Configuration configuration) {
+        final String types = configuration.get("artifacts.types");
+        if (types == null) throw new IllegalStateException("Property \"artifacts.types\" not set");
 
-    private ArtifactType() {
-        type = name().toLowerCase();
+        final List<ArtifactType> values = new ArrayList<>();
+        final StringTokenizer tokenizer = new StringTokenizer(types, ",");
+        while (tokenizer.hasMoreTokens()) {
+            final String type = tokenizer.nextToken().trim().toLowerCase();
+            if (!type.isEmpty()) values.add(new ArtifactType(type, values.size()));
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    public String name() {
+        return type;
     }
 
     public String getType(Configuration configuration) {
@@ -21,7 +44,48 @@ public enum ArtifactType {
         return configuration.get("artifacts.type." + type + ".extension").trim();
     }
 
+    public String getClassifier(Configuration configuration) {
+        final String classifier = configuration.get("artifacts.type." + type + ".classifier");
+        return classifier == null || classifier.trim().isEmpty() ? null : classifier.trim();
+    }
+
+    public String getMavenExtension(Configuration configuration) {
+        final String extension = configuration.get("artifacts.type." + type + ".maven.extension");
+        return extension == null || extension.trim().isEmpty() ? "jar" : extension.trim();
+    }
+
     public String getArtifactFile(Configuration configuration, Marker marker) {
         return configuration.getResolved("artifacts.type." + type + ".pattern", marker.asMap());
     }
+
+    /* ====================================================================== */
+
+    @Override
+    public int compareTo(ArtifactType type) {
+        if (type == null) throw new NullPointerException();
+        final int order = Integer.compare(this.order, type.order);
+        return order != 0 ? order : this.type.compareTo(type.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return type.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[" + type + "]";
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (object == null) return false;
+        if (object == this) return true;
+        try {
+            final ArtifactType type = (ArtifactType) object;
+            return type.type.equals(this.type) && type.order == order;
+        } catch (final ClassCastException exception) {
+            return false;
+        }
+    }
 }
@@ -1,23 +1,23 @@
 package com.github.pfumagalli.demavenizer.ivy;
 
-import static com.github.pfumagalli.demavenizer.ivy.ArtifactType.BIN;
-import static com.github.pfumagalli.demavenizer.ivy.ArtifactType.DOC;
-import static com.github.pfumagalli.demavenizer.ivy.ArtifactType.SRC;
-
-import java.net.HttpURLConnection;
 import java.net.URI;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
+import com.github.pfumagalli.demavenizer.Configuration;
 import com.github.pfumagalli.demavenizer.License;
 import com.github.pfumagalli.demavenizer.Log;
+import com.github.pfumagalli.demavenizer.Workers;
 import com.github.pfumagalli.demavenizer.maven.Dependency;
 import com.github.pfumagalli.demavenizer.maven.Project;
+import com.github.pfumagalli.demavenizer.net.Response;
+import com.github.pfumagalli.demavenizer.net.Transport;
 
 public class Descriptor extends Marker {
 
@@ -28,9 +28,9 @@ public class Descriptor extends Marker {
     private final Map<License, URI> licenses;
     private final Map<Marker, Dependency> dependencies = new TreeMap<>(); // sorted
     private final Map<Dependency, Marker> optionalDependencies = new TreeMap<>(); // sorted
-    private final Map<ArtifactType, URI> artifacts = new EnumMap<>(ArtifactType.class);
+    private final Map<ArtifactType, URI> artifacts = new TreeMap<>(); // configured order
 
-    public Descriptor(Project project, Mapper mapper, Marker translated) {
+    public Descriptor(Project project, Mapper mapper, Marker translated, Configuration configuration) {
         super(project,
               translated == null ? project.getGroupId() : translated.getOrganisation(),
               translated == null ? project.getArtifactId() : translated.getModule(),
@@ -54,7 +54,7 @@ public class Descriptor extends Marker {
                     if (marker == null) {
                         missing.add(dependency);
                     } else {
-                        dependencies.put(mapper.getIvyMarker(dependency), dependency);
+                        dependencies.put(marker, dependency);
                     }
                     break;
                 default: // ignore PROVIDED, SYSTEM, TEST
@@ -66,10 +66,24 @@ public class Descriptor extends Marker {
         /* Check if we resolved all dependencies */
         if (!missing.isEmpty()) throw new DependenciesException(this, missing);
 
-        /* Check if we have the various artifacts */
-        checkArtifact(project.getJarURI(), BIN);
-        checkArtifact(project.getSourcesURI(), SRC);
-        checkArtifact(project.getJavadocURI(), DOC);
+        /* Check if we have the various artifacts, all at once */
+        final List<ArtifactType> types = ArtifactType.values(configuration);
+        final List<Future<URI>> probes = new ArrayList<>(types.size());
+        for (final ArtifactType type: types) {
+            final URI uri = project.getArtifactURI(type.getClassifier(configuration), type.getMavenExtension(configuration));
+            probes.add(Workers.executor().submit(new Callable<URI>() {
+                @Override
+                public URI call() {
+                    return checkArtifact(uri);
+                }
+            }));
+        }
+
+        /* Collect whatever we found */
+        for (int x = 0; x < types.size(); x ++) {
+            final URI uri = Workers.join(probes.get(x));
+            if (uri != null) artifacts.put(types.get(x), uri);
+        }
     }
 
     public String getMavenId() {
@@ -109,20 +123,24 @@ public class Descriptor extends Marker {
         return optionalDependencies;
     }
 
-    /* Do a HEAD request against a URI */
-    private void checkArtifact(URI uri, ArtifactType publication) {
+    /* Do a HEAD request against a URI, returning where we found it */
+    private static URI checkArtifact(URI uri) {
         try {
-            final HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
-            connection.setRequestMethod("HEAD");
-            connection.connect();
-            if (connection.getResponseCode() == 200) {
-                artifacts.put(publication, connection.getURL().toURI());
-                Log.info("Artifact URI " + uri.toASCIIString() + " found");
-            } else {
-                Log.warn("Artifact URI " + uri.toASCIIString() + " not accessible");
+            final Response response = Transport.getDefault().head(uri);
+            try {
+                if (response.getStatus() == Response.OK) {
+                    Log.info("Artifact URI " + uri.toASCIIString() + " found");
+                    return response.getURI();
+                } else {
+                    Log.warn("Artifact URI " + uri.toASCIIString() + " not accessible");
+                    return null;
+                }
+            } finally {
+                response.close();
             }
         } catch (final Exception exception) {
             Log.error("I/O error calling HEAD on " + uri, exception);
+            return null;
         }
 
     }
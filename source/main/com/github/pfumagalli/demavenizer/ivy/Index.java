@@ -0,0 +1,162 @@
+package com.github.pfumagalli.demavenizer.ivy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.pfumagalli.demavenizer.Log;
+
+/* What we extracted from each "ivy.xml" in the library, so unchanged files needn't be parsed again */
+final class Index {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String HEADER = "# demavenizer library index 1";
+
+    private Index() {
+        throw new IllegalStateException();
+    }
+
+    /* ====================================================================== */
+
+    /* Entries keyed by path, an unreadable or outdated index is just empty */
+    static Map<String, Entry> load(File file) {
+        final Map<String, Entry> entries = new HashMap<>();
+        if ((file == null) || !file.isFile()) return entries;
+
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+            try {
+                if (!HEADER.equals(reader.readLine())) {
+                    Log.warn("Ignoring outdated library index " + file);
+                    return entries;
+                }
+
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String fields[] = line.split("\t", -1);
+                    if (fields.length != 7) {
+                        Log.warn("Ignoring corrupted library index " + file);
+                        entries.clear();
+                        return entries;
+                    }
+                    final Entry entry = new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                                                  decode(fields[3]), decode(fields[4]), decode(fields[5]), decode(fields[6]));
+                    entries.put(entry.path, entry);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException | NumberFormatException exception) {
+            Log.warn("Ignoring unreadable library index " + file + " (" + exception.getMessage() + ")");
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /* Write all entries to a temporary file, then move it in place */
+    static void store(File file, Collection<Entry> entries) {
+        try {
+            final File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            try {
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), UTF8));
+                try {
+                    writer.write(HEADER);
+                    writer.write('\n');
+                    for (final Entry entry: entries) {
+                        writer.write(entry.path);
+                        writer.write('\t');
+                        writer.write(Long.toString(entry.modified));
+                        writer.write('\t');
+                        writer.write(Long.toString(entry.size));
+                        writer.write('\t');
+                        writer.write(encode(entry.maven));
+                        writer.write('\t');
+                        writer.write(encode(entry.organisation));
+                        writer.write('\t');
+                        writer.write(encode(entry.module));
+                        writer.write('\t');
+                        writer.write(encode(entry.revision));
+                        writer.write('\n');
+                    }
+                } finally {
+                    writer.close();
+                }
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                temporary.delete();
+            }
+        } catch (final IOException exception) {
+            Log.warn("Unable to write library index " + file + " (" + exception.getMessage() + ")");
+        }
+    }
+
+    /* Identifies a set of entries, whatever else was written from them must carry the same */
+    static long generation(Collection<Entry> entries) {
+        long hash = 0xCBF29CE484222325L; // FNV-1a
+        for (final Entry entry: entries) {
+            for (final String value: new String[] { entry.path, Long.toString(entry.modified), Long.toString(entry.size),
+                                                    entry.maven, entry.organisation, entry.module, entry.revision }) {
+                final String encoded = encode(value) + '\t';
+                for (int x = 0; x < encoded.length(); x ++) {
+                    hash ^= encoded.charAt(x);
+                    hash *= 0x100000001B3L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static String encode(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String decode(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /* ====================================================================== */
+
+    static final class Entry implements Comparable<Entry> {
+
+        final String path;
+        final long modified;
+        final long size;
+        final String maven;
+        final String organisation;
+        final String module;
+        final String revision;
+
+        Entry(String path, long modified, long size, String maven, String organisation, String module, String revision) {
+            assert (path != null): "Null path";
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.maven = maven;
+            this.organisation = organisation;
+            this.module = module;
+            this.revision = revision;
+        }
+
+        /* Same path, same stat, same contents (or so we believe) */
+        boolean matches(long modified, long size) {
+            return (this.modified == modified) && (this.size == size);
+        }
+
+        @Override
+        public int compareTo(Entry entry) {
+            return path.compareTo(entry.path);
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.github.pfumagalli.demavenizer.ivy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.github.pfumagalli.demavenizer.Log;
+import com.github.pfumagalli.demavenizer.maven.Identifier;
+
+/*
+ * A read-only, memory-mapped table of Maven to Ivy mappings, queried in place.
+ *
+ * Layout (all big endian ints):
+ *
+ *   magic, version, generation (two ints, the library index it was built from),
+ *   number of strings, records, latest and modules
+ *   string offsets, sorted by their UTF-8 bytes
+ *   records: group, artifact, version (or -1), organisation, module, revision
+ *            (string indexes, sorted by group, artifact, version)
+ *   latest: group, artifact, record (sorted by group, artifact)
+ *   modules: organisation, module, record (sorted by organisation, module)
+ *   strings: length, UTF-8 bytes
+ */
+final class MappedIndex {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x444D5649; // "DMVI"
+    private static final int VERSION = 3;
+    private static final int HEADER = 8;
+    private static final int RECORD = 6;
+    private static final int LATEST = 3;
+    private static final int MODULE = 3;
+
+    /* Strings are sorted by their unsigned UTF-8 bytes, the same way we search them */
+    private static final Comparator<byte[]> BYTES = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] bytes1, byte[] bytes2) {
+            final int length = Math.min(bytes1.length, bytes2.length);
+            for (int x = 0; x < length; x ++) {
+                final int compare = Integer.compare(bytes1[x] & 0xFF, bytes2[x] & 0xFF);
+                if (compare != 0) return compare;
+            }
+            return Integer.compare(bytes1.length, bytes2.length);
+        }
+    };
+
+    private final ByteBuffer buffer;
+    private final int strings;
+    private final int records;
+    private final int latest;
+    private final int modules;
+
+    private MappedIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        strings = buffer.getInt(16);
+        records = buffer.getInt(20);
+        latest = buffer.getInt(24);
+        modules = buffer.getInt(28);
+    }
+
+    /* Map a previously written table, null if missing, unusable or built from another generation */
+    static MappedIndex open(File file, long generation) {
+        if (!file.isFile()) return null;
+        try {
+            final RandomAccessFile random = new RandomAccessFile(file, "r");
+            try {
+                /* Mappings outlive their channel, and cost nothing until paged in */
+                final ByteBuffer buffer = random.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, random.length());
+                if ((buffer.capacity() < HEADER * 4) || (buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+                    Log.warn("Ignoring outdated mapped index " + file);
+                    return null;
+                }
+                if (buffer.getLong(8) != generation) {
+                    Log.info("Ignoring stale mapped index " + file);
+                    return null;
+                }
+                if (!isComplete(buffer)) {
+                    Log.warn("Ignoring corrupted mapped index " + file);
+                    return null;
+                }
+                return new MappedIndex(buffer);
+            } finally {
+                random.close();
+            }
+        } catch (final IOException exception) {
+            Log.warn("Unable to map index " + file + " (" + exception.getMessage() + ")");
+            return null;
+        }
+    }
+
+    /* All tables and strings where the header says, and nothing after them */
+    private static boolean isComplete(ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (capacity < HEADER * 4) return false;
+        final long strings = buffer.getInt(16);
+        final long records = buffer.getInt(20);
+        final long latest = buffer.getInt(24);
+        final long modules = buffer.getInt(28);
+        if ((strings < 0) || (records < 0) || (latest < 0) || (modules < 0)) return false;
+
+        final long fixed = (HEADER + strings + (records * RECORD) + (latest * LATEST) + (modules * MODULE)) * 4;
+        if (fixed > capacity) return false;
+        if (strings == 0) return fixed == capacity;
+
+        final int last = buffer.getInt((int) (HEADER + strings - 1) * 4);
+        if ((last < fixed) || (last > capacity - 4)) return false;
+        return ((long) last) + 4 + buffer.getInt(last) == capacity;
+    }
+
+    /* Write all mappings and their latest versions, to a temporary file moved in place */
+    static void write(File file, long generation, Map<Identifier, Marker> mappings, Map<Identifier, Marker> latestVersion)
+    throws IOException {
+
+        /* Intern all strings, sorted so that their index orders like them */
+        final TreeSet<byte[]> sorted = new TreeSet<>(BYTES);
+        for (final Marker marker: mappings.values()) {
+            final Identifier identifier = marker.getIdentifier();
+            sorted.add(identifier.getGroupId().getBytes(UTF8));
+            sorted.add(identifier.getArtifactId().getBytes(UTF8));
+            if (identifier.getVersion() != null) sorted.add(identifier.getVersion().getBytes(UTF8));
+            sorted.add(marker.getOrganisation().getBytes(UTF8));
+            sorted.add(marker.getModule().getBytes(UTF8));
+            sorted.add(marker.getRevision().toString().getBytes(UTF8));
+        }
+        final List<byte[]> table = new ArrayList<>(sorted);
+        final Map<String, Integer> indexes = new HashMap<>();
+        for (int x = 0; x < table.size(); x ++) indexes.put(new String(table.get(x), UTF8), x);
+
+        /* Records sorted by their string indexes, exactly how they'll be searched */
+        final List<int[]> entries = new ArrayList<>(mappings.size());
+        for (final Marker marker: mappings.values()) {
+            final Identifier identifier = marker.getIdentifier();
+            entries.add(new int[] {
+                indexes.get(identifier.getGroupId()),
+                indexes.get(identifier.getArtifactId()),
+                identifier.getVersion() == null ? -1 : indexes.get(identifier.getVersion()),
+                indexes.get(marker.getOrganisation()),
+                indexes.get(marker.getModule()),
+                indexes.get(marker.getRevision().toString())
+            });
+        }
+        Collections.sort(entries, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] entry1, int[] entry2) {
+                return compareKeys(entry1, entry2, 3);
+            }
+        });
+
+        /* Latest versions point to their record */
+        final List<int[]> latest = new ArrayList<>(latestVersion.size());
+        for (final Entry<Identifier, Marker> entry: latestVersion.entrySet()) {
+            final Identifier identifier = entry.getValue().getIdentifier();
+            final int key[] = new int[] {
+                indexes.get(identifier.getGroupId()),
+                indexes.get(identifier.getArtifactId()),
+                identifier.getVersion() == null ? -1 : indexes.get(identifier.getVersion())
+            };
+            int record = -1;
+            for (int low = 0, high = entries.size() - 1; low <= high; ) {
+                final int middle = (low + high) >>> 1;
+                final int compare = compareKeys(entries.get(middle), key, 3);
+                if (compare < 0) low = middle + 1;
+                else if (compare > 0) high = middle - 1;
+                else { record = middle; break; }
+            }
+            if (record < 0) throw new IllegalStateException("Latest version " + identifier.asString() + " not mapped");
+            latest.add(new int[] { key[0], key[1], record });
+        }
+        Collections.sort(latest, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] entry1, int[] entry2) {
+                return compareKeys(entry1, entry2, 2);
+            }
+        });
+
+        /* Ivy modules point to their records too */
+        final List<int[]> modules = new ArrayList<>(entries.size());
+        for (int x = 0; x < entries.size(); x ++) modules.add(new int[] { entries.get(x)[3], entries.get(x)[4], x });
+        Collections.sort(modules, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] entry1, int[] entry2) {
+                return compareKeys(entry1, entry2, 3);
+            }
+        });
+
+        /* Strings go last, after all fixed size tables */
+        int offset = (HEADER + table.size() + (entries.size() * RECORD) + (latest.size() * LATEST) + (modules.size() * MODULE)) * 4;
+        final File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(generation);
+                output.writeInt(table.size());
+                output.writeInt(entries.size());
+                output.writeInt(latest.size());
+                output.writeInt(modules.size());
+                for (final byte string[]: table) {
+                    output.writeInt(offset);
+                    offset += 4 + string.length;
+                }
+                for (final int entry[]: entries) for (final int value: entry) output.writeInt(value);
+                for (final int entry[]: latest) for (final int value: entry) output.writeInt(value);
+                for (final int entry[]: modules) for (final int value: entry) output.writeInt(value);
+                for (final byte string[]: table) {
+                    output.writeInt(string.length);
+                    output.write(string);
+                }
+            } finally {
+                output.close();
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    private static int compareKeys(int[] entry1, int[] entry2, int length) {
+        for (int x = 0; x < length; x ++) {
+            final int compare = Integer.compare(entry1[x], entry2[x]);
+            if (compare != 0) return compare;
+        }
+        return 0;
+    }
+
+    /* ====================================================================== */
+
+    int size() {
+        return records;
+    }
+
+    /* The exact mapping for a (possibly unversioned) Maven identifier */
+    Marker get(Identifier identifier) {
+        final int group = find(identifier.getGroupId());
+        if (group < 0) return null;
+        final int artifact = find(identifier.getArtifactId());
+        if (artifact < 0) return null;
+        final int version;
+        if (identifier.getVersion() == null) {
+            version = -1;
+        } else {
+            version = find(identifier.getVersion());
+            if (version < 0) return null;
+        }
+
+        final int base = (HEADER + strings) * 4;
+        for (int low = 0, high = records - 1; low <= high; ) {
+            final int middle = (low + high) >>> 1;
+            final int position = base + (middle * RECORD * 4);
+            int compare = Integer.compare(buffer.getInt(position), group);
+            if (compare == 0) compare = Integer.compare(buffer.getInt(position + 4), artifact);
+            if (compare == 0) compare = Integer.compare(buffer.getInt(position + 8), version);
+            if (compare < 0) low = middle + 1;
+            else if (compare > 0) high = middle - 1;
+            else return record(middle);
+        }
+        return null;
+    }
+
+    /* The latest mapping for the group and artifact of a Maven identifier */
+    Marker getLatest(Identifier identifier) {
+        final int group = find(identifier.getGroupId());
+        if (group < 0) return null;
+        final int artifact = find(identifier.getArtifactId());
+        if (artifact < 0) return null;
+
+        final int base = (HEADER + strings + (records * RECORD)) * 4;
+        for (int low = 0, high = latest - 1; low <= high; ) {
+            final int middle = (low + high) >>> 1;
+            final int position = base + (middle * LATEST * 4);
+            int compare = Integer.compare(buffer.getInt(position), group);
+            if (compare == 0) compare = Integer.compare(buffer.getInt(position + 4), artifact);
+            if (compare < 0) low = middle + 1;
+            else if (compare > 0) high = middle - 1;
+            else return record(buffer.getInt(position + 8));
+        }
+        return null;
+    }
+
+    /* All mapped revisions of a Maven group and artifact, records are contiguous */
+    NavigableMap<Revision, Marker> getRevisions(Identifier identifier) {
+        final NavigableMap<Revision, Marker> revisions = new TreeMap<>();
+        final int group = find(identifier.getGroupId());
+        if (group < 0) return revisions;
+        final int artifact = find(identifier.getArtifactId());
+        if (artifact < 0) return revisions;
+
+        final int base = (HEADER + strings) * 4;
+        for (int x = lowerBound(base, RECORD, records, group, artifact); x < records; x ++) {
+            final int position = base + (x * RECORD * 4);
+            if ((buffer.getInt(position) != group) || (buffer.getInt(position + 4) != artifact)) break;
+            final Marker marker = record(x);
+            revisions.put(marker.getRevision(), marker);
+        }
+        return revisions;
+    }
+
+    /* All mapped revisions of an Ivy organisation and module */
+    NavigableMap<Revision, Marker> getRevisions(String organisation, String module) {
+        final NavigableMap<Revision, Marker> revisions = new TreeMap<>();
+        final int organisationIndex = find(organisation);
+        if (organisationIndex < 0) return revisions;
+        final int moduleIndex = find(module);
+        if (moduleIndex < 0) return revisions;
+
+        final int base = (HEADER + strings + (records * RECORD) + (latest * LATEST)) * 4;
+        for (int x = lowerBound(base, MODULE, modules, organisationIndex, moduleIndex); x < modules; x ++) {
+            final int position = base + (x * MODULE * 4);
+            if ((buffer.getInt(position) != organisationIndex) || (buffer.getInt(position + 4) != moduleIndex)) break;
+            final Marker marker = record(buffer.getInt(position + 8));
+            revisions.put(marker.getRevision(), marker);
+        }
+        return revisions;
+    }
+
+    /* Everything, on the heap, for those few who really need it */
+    Map<Identifier, Marker> getMappings() {
+        final Map<Identifier, Marker> mappings = new HashMap<>(records);
+        for (int x = 0; x < records; x ++) {
+            final Marker marker = record(x);
+            mappings.put(marker.getIdentifier(), marker);
+        }
+        return mappings;
+    }
+
+    /* ====================================================================== */
+
+    private Marker record(int record) {
+        final int position = (HEADER + strings + (record * RECORD)) * 4;
+        final int version = buffer.getInt(position + 8);
+        final Identifier identifier = Identifier.valueOf(string(buffer.getInt(position)),
+                                                         string(buffer.getInt(position + 4)),
+                                                         version < 0 ? null : string(version));
+        return new Marker(identifier,
+                          string(buffer.getInt(position + 12)),
+                          string(buffer.getInt(position + 16)),
+                          string(buffer.getInt(position + 20)));
+    }
+
+    /* First row in a table whose two leading columns are not less than the key */
+    private int lowerBound(int base, int stride, int count, int key1, int key2) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int position = base + (middle * stride * 4);
+            int compare = Integer.compare(buffer.getInt(position), key1);
+            if (compare == 0) compare = Integer.compare(buffer.getInt(position + 4), key2);
+            if (compare < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private String string(int index) {
+        final int offset = buffer.getInt((HEADER + index) * 4);
+        final byte bytes[] = new byte[buffer.getInt(offset)];
+        for (int x = 0; x < bytes.length; x ++) bytes[x] = buffer.get(offset + 4 + x);
+        return new String(bytes, UTF8);
+    }
+
+    /* Binary search of the string table, comparing bytes in place */
+    private int find(String string) {
+        final byte bytes[] = string.getBytes(UTF8);
+        for (int low = 0, high = strings - 1; low <= high; ) {
+            final int middle = (low + high) >>> 1;
+            final int offset = buffer.getInt((HEADER + middle) * 4);
+            final int length = buffer.getInt(offset);
+
+            int compare = 0;
+            for (int x = 0; (compare == 0) && (x < Math.min(length, bytes.length)); x ++)
+                compare = Integer.compare(buffer.get(offset + 4 + x) & 0xFF, bytes[x] & 0xFF);
+            if (compare == 0) compare = Integer.compare(length, bytes.length);
+
+            if (compare < 0) low = middle + 1;
+            else if (compare > 0) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+}
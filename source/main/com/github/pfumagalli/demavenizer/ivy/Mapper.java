@@ -7,33 +7,98 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import com.github.pfumagalli.demavenizer.Log;
 import com.github.pfumagalli.demavenizer.maven.Identifier;
-import com.github.pfumagalli.demavenizer.parser.Node;
+import com.github.pfumagalli.demavenizer.parser.ParseException;
 import com.github.pfumagalli.demavenizer.parser.Parser;
 
 public class Mapper {
 
-    private final Map<Identifier, Identifier> mavenMappings = new HashMap<>();
-    private final Map<Identifier, Marker> ivyMappings = new HashMap<>();
-    private final Map<Identifier, Marker> latestVersion = new HashMap<>();
+    private final Rules rules = new Rules();
+    private final Map<Identifier, Marker> ivyMappings = new ConcurrentHashMap<>();
+    private final Map<Identifier, NavigableMap<Revision, Marker>> mavenRevisions = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<Revision, Marker>> ivyRevisions = new ConcurrentHashMap<>();
+    private final MappedIndex table;
 
     public Mapper(File repository, File mappings) {
+        this(repository, null, false, mappings);
+    }
+
+    /*
+     * With an index file only library entries changed since the last run are
+     * parsed. When "mapped", mappings are served from a memory-mapped table
+     * next to the index, and only modules registered since live on the heap.
+     */
+    public Mapper(File repository, File index, boolean mapped, File mappings) {
         if (!repository.isDirectory())
             throw new IllegalArgumentException("Invalid directory " + repository);
+        if (mapped && (index == null))
+            throw new IllegalArgumentException("Memory-mapped index requires an index file");
         Log.info("Initializing repository mappings from " + repository);
-        read(repository);
+
+        final Map<String, Index.Entry> previous = Index.load(index);
+        final List<Index.Entry> entries = read(repository, previous);
+        final boolean changed = changed(entries, previous);
+        if ((index != null) && changed) Index.store(index, entries);
 
         if (!mappings.isFile())
             throw new IllegalArgumentException("Invalid mappings file " + mappings);
         load(mappings);
 
-        calculateLatest();
+        /* A table built from exactly these entries (and after the index)? Nothing to load then */
+        final long generation = Index.generation(entries);
+        final File file = mapped ? new File(index.getPath() + ".map") : null;
+        MappedIndex table = mapped && (file.lastModified() >= index.lastModified()) ? MappedIndex.open(file, generation) : null;
+        if (table == null) {
+            merge(entries);
+            calculateLatest();
+
+            if (mapped) try {
+                final Map<Identifier, Marker> latest = new HashMap<>();
+                for (final Entry<Identifier, NavigableMap<Revision, Marker>> entry: mavenRevisions.entrySet())
+                    latest.put(entry.getKey(), entry.getValue().lastEntry().getValue());
+                MappedIndex.write(file, generation, ivyMappings, latest);
+                table = MappedIndex.open(file, generation);
+            } catch (final IOException exception) {
+                Log.warn("Unable to write mapped index " + file + " (" + exception.getMessage() + ")");
+            }
+
+            /* Keep the heap for what gets registered from now on */
+            if (table != null) {
+                ivyMappings.clear();
+                mavenRevisions.clear();
+                ivyRevisions.clear();
+            }
+        }
+        this.table = table;
+        if (table != null) Log.info("Using " + table.size() + " mappings from " + file);
+    }
+
+    /* All known Maven to Ivy mappings, sorted by Maven identifier */
+    public Map<Identifier, Marker> getMappings() {
+        final Map<Identifier, Marker> mappings = table == null ? new TreeMap<Identifier, Marker>() :
+                                                 new TreeMap<>(table.getMappings());
+        mappings.putAll(ivyMappings);
+        return Collections.unmodifiableMap(mappings);
     }
 
     public Marker getLatest(String identifier) {
@@ -41,33 +106,33 @@ public class Mapper {
     }
 
     public Marker getLatest(Identifier identifier) {
+        return latest(identifier.unversioned());
+    }
+
+    /* All mapped revisions of a Maven artifact, for range queries use tailMap() and friends */
+    public NavigableMap<Revision, Marker> getRevisions(Identifier identifier) {
         final Identifier unversioned = identifier.unversioned();
-        if (latestVersion.containsKey(unversioned)) return latestVersion.get(unversioned);
-        for (final Marker marker: latestVersion.values()) {
-            if (marker.getIdentifier().unversioned().equals(unversioned)) return marker;
-        }
-        return null;
+        return merge(mavenRevisions.get(unversioned), table == null ? null : table.getRevisions(unversioned));
     }
 
-    public Marker getIvyMarker(Identifier identifier) {
+    /* All revisions of an Ivy organisation and module */
+    public NavigableMap<Revision, Marker> getRevisions(String organisation, String module) {
+        return merge(ivyRevisions.get(organisation + "#" + module), table == null ? null : table.getRevisions(organisation, module));
+    }
 
-        /* Forced mapping? */
-        final Identifier mapped = mavenMappings.get(identifier);
-        if (mapped != null) {
-            Log.warn("Using mapped " + mapped.asString() + " instead of " + identifier.asString());
-            identifier = mapped;
-        }
+    /* All revisions of the same Ivy module newer than the given one */
+    public NavigableMap<Revision, Marker> getNewer(Marker marker) {
+        return getRevisions(marker.getOrganisation(), marker.getModule()).tailMap(marker.getRevision(), false);
+    }
 
-        /* Forced mapping catching all versions?? */
-        final Identifier unversioned = mavenMappings.get(identifier.unversioned());
-        if (unversioned != null) {
-            Log.warn("Using mapped " + unversioned.asString() + " instead of " + identifier.asString() + " (unversioned)");
-            identifier = unversioned;
-        }
+    public Marker getIvyMarker(Identifier identifier) {
+
+        /* Forced mappings, exact, catching all versions, or by rule */
+        identifier = rules.apply(identifier);
 
         /* Need to get up latest version */
         if (identifier.getVersion() == null){
-            final Marker marker = latestVersion.get(identifier);
+            final Marker marker = latest(identifier);
             if (marker != null) {
                 Log.warn("Using latest version " + marker.asString() + " for " + identifier.asString());
                 return marker;
@@ -75,11 +140,11 @@ public class Mapper {
         }
 
         /* Check if we have a mapping */
-        final Marker marker = ivyMappings.get(identifier);
+        final Marker marker = mapping(identifier);
         if (marker != null) return marker;
 
         /* Can we upgrade to the latest version? */
-        final Marker latest = latestVersion.get(identifier.unversioned());
+        final Marker latest = latest(identifier.unversioned());
         if (latest == null) return null;
 
         /* Check version */
@@ -93,30 +158,75 @@ public class Mapper {
 
     }
 
+    /* Make a freshly written Ivy module visible to all subsequent lookups */
+    public void register(Marker marker) {
+        final Identifier identifier = marker.getIdentifier();
+        if (identifier == null) throw new IllegalArgumentException("No Maven identifier for " + marker.asString());
+
+        /* Don't keep whole projects around, just their coordinates */
+        final Identifier plain = identifier.canonical();
+        final Marker registered = new Marker(plain, marker.getOrganisation(), marker.getModule(), marker.getRevision().toString());
+
+        /* Index first, it refuses mismatching modules, and only then publish */
+        index(registered);
+        ivyMappings.put(plain, registered);
+        Log.info("Registered mapping from Maven " + plain.asString() + " to Ivy " + registered.asString());
+    }
+
+    /* Registered modules first, then the mapped table */
+    private Marker mapping(Identifier identifier) {
+        final Marker marker = ivyMappings.get(identifier);
+        if ((marker != null) || (table == null)) return marker;
+        return table.get(identifier);
+    }
+
+    /* The newest between what was registered and what's in the mapped table */
+    private Marker latest(Identifier unversioned) {
+        final NavigableMap<Revision, Marker> revisions = mavenRevisions.get(unversioned);
+        final Marker registered = revisions == null ? null : revisions.lastEntry().getValue();
+        if (table == null) return registered;
+        final Marker mapped = table.getLatest(unversioned);
+        if (registered == null) return mapped;
+        if (mapped == null) return registered;
+        return registered.getRevision().compareTo(mapped.getRevision()) < 0 ? mapped : registered;
+    }
+
+    private static NavigableMap<Revision, Marker> merge(NavigableMap<Revision, Marker> registered, NavigableMap<Revision, Marker> mapped) {
+        if (mapped == null) {
+            if (registered == null) return Collections.unmodifiableNavigableMap(new TreeMap<Revision, Marker>());
+            return Collections.unmodifiableNavigableMap(registered);
+        }
+        if (registered != null) mapped.putAll(registered);
+        return Collections.unmodifiableNavigableMap(mapped);
+    }
+
     private void calculateLatest() {
-        for (final Entry<Identifier, Marker> entry: ivyMappings.entrySet()) {
-
-            final Identifier identifier = entry.getKey();
-            final Identifier unversioned = identifier.unversioned();
-
-            final Marker marker = entry.getValue();
-            final Marker found = latestVersion.get(unversioned);
-            if (found == null) {
-                latestVersion.put(unversioned, marker);
-            } else {
-                if (found.getOrganisation().equals(marker.getOrganisation()) &&
-                    found.getModule().equals(marker.getModule())) {
-                    if (found.getRevision().compareTo(marker.getRevision()) < 0)
-                        latestVersion.put(unversioned, marker);
-                } else {
-                    throw new IllegalStateException("Organization/module mismatch comparing versions for " + marker.asString() + " and " + found.asString());
-                }
-            }
+        for (final Marker marker: ivyMappings.values()) index(marker);
+
+        for (final Entry<Identifier, NavigableMap<Revision, Marker>> entry: mavenRevisions.entrySet()) {
+            Log.info("Latest version of " + entry.getKey().asString() + " is " + entry.getValue().lastEntry().getValue().asString());
         }
+    }
 
-        for (final Entry<Identifier, Marker> entry: latestVersion.entrySet()) {
-            Log.info("Latest version of " + entry.getKey().asString() + " is " + entry.getValue().asString());
+    /* Revisions by Maven artifact and by Ivy module, readers never lock */
+    private synchronized void index(Marker marker) {
+        final Identifier unversioned = marker.getIdentifier().unversioned();
+        NavigableMap<Revision, Marker> revisions = mavenRevisions.get(unversioned);
+        if (revisions == null) {
+            mavenRevisions.put(unversioned, revisions = new ConcurrentSkipListMap<>());
+        } else {
+            final Marker found = revisions.firstEntry().getValue();
+            if (!found.getOrganisation().equals(marker.getOrganisation()) ||
+                !found.getModule().equals(marker.getModule())) {
+                throw new IllegalStateException("Organization/module mismatch comparing versions for " + marker.asString() + " and " + found.asString());
+            }
         }
+        revisions.put(marker.getRevision(), marker);
+
+        final String module = marker.getOrganisation() + "#" + marker.getModule();
+        NavigableMap<Revision, Marker> modules = ivyRevisions.get(module);
+        if (modules == null) ivyRevisions.put(module, modules = new ConcurrentSkipListMap<>());
+        modules.put(marker.getRevision(), marker);
     }
 
     private void load(File file) {
@@ -132,38 +242,141 @@ public class Mapper {
         }
 
         for (final Entry<Object, Object> entry: properties.entrySet()) {
-            final Identifier key = new Identifier(entry.getKey().toString());
-            final Identifier value = new Identifier(entry.getValue().toString());
-            mavenMappings.put(key, value);
-            Log.info("Added mapping from Maven " + key.asString() + " to Maven " + value.asString());
+            final String key = entry.getKey().toString().trim();
+            final String value = entry.getValue().toString().trim();
+            rules.add(key, value);
+            Log.info("Added mapping from Maven " + key + " to Maven " + value);
+        }
+        rules.freeze();
+    }
+
+    /* Walk the library in parallel, parsing only what the index doesn't know yet */
+    private List<Index.Entry> read(File repository, Map<String, Index.Entry> previous) {
+        final AtomicInteger parsed = new AtomicInteger();
+        final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        final List<Index.Entry> entries;
+        try {
+            entries = pool.invoke(new Scan(repository, "", previous, parsed));
+        } finally {
+            pool.shutdown();
+        }
+        Log.info("Parsed " + parsed.get() + " of " + entries.size() + " Ivy files in " + repository);
+
+        /* Path order, so duplicates resolve the same way every time */
+        Collections.sort(entries);
+        return entries;
+    }
+
+    /* Unchanged files reuse their previous entry, anything else is a change */
+    private static boolean changed(List<Index.Entry> entries, Map<String, Index.Entry> previous) {
+        if (entries.size() != previous.size()) return true;
+        for (final Index.Entry entry: entries) if (previous.get(entry.path) != entry) return true;
+        return false;
+    }
+
+    private void merge(List<Index.Entry> entries) {
+        final Map<Identifier, String> paths = new HashMap<>();
+        for (final Index.Entry entry: entries) {
+            if (entry.maven == null) continue;
+            final Identifier identifier = Identifier.valueOf(entry.maven);
+            final Marker marker = new Marker(identifier, entry.organisation, entry.module, entry.revision);
+            final String path = paths.put(identifier, entry.path);
+            if (path != null) Log.warn("Duplicate mapping for Maven " + identifier.asString() + " in " + entry.path + " overrides " + path);
+            ivyMappings.put(identifier, marker);
+            Log.info("Added mapping from Maven " + identifier.asString() + " to Ivy " + marker.asString());
         }
     }
 
-    private void read(File file) {
-        if (file.isDirectory()) {
-            for (final File child: file.listFiles()) read(child);
-        } else if (file.isFile() && file.getName().equals("ivy.xml")) {
-            final Node node = Parser.parse(file.toURI());
-            String maven = null;
-            String organisation = null;
-            String module = null;
-            String revision = null;
-            for (final Node info: node.getChildren("info")) {
-                for (final Node mavenNode: info.getChildren("maven")) {
-                    maven = mavenNode.getAttribute("id");
+    /* Only the header matters, so stream it and stop as soon as "info" is closed */
+    private static Index.Entry scan(File file, String path, long modified, long size) {
+        String maven = null;
+        String organisation = null;
+        String module = null;
+        String revision = null;
+        try {
+            final InputStream input = new FileInputStream(file);
+            try {
+                final XMLStreamReader reader = Parser.stream(input);
+                try {
+                    boolean info = false;
+                    int depth = 0;
+                    while (reader.hasNext()) {
+                        final int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            depth ++;
+                            if ((depth == 2) && "info".equals(reader.getLocalName())) {
+                                info = true;
+                                organisation = reader.getAttributeValue(null, "organisation");
+                                module = reader.getAttributeValue(null, "module");
+                                revision = reader.getAttributeValue(null, "revision");
+                            } else if (info && (depth == 3) && "maven".equals(reader.getLocalName())) {
+                                maven = reader.getAttributeValue(null, "id");
+                            }
+                        } else if (event == XMLStreamConstants.END_ELEMENT) {
+                            if (info && (depth == 2)) break;
+                            depth --;
+                        }
+                    }
+                } finally {
+                    reader.close();
                 }
-                organisation = info.getAttribute("organisation");
-                module = info.getAttribute("module");
-                revision = info.getAttribute("revision");
+            } finally {
+                input.close();
             }
-            if (maven == null) {
-                Log.warn("No maven info found in " + file);
-            } else {
-                final Identifier identifier = new Identifier(maven);
-                final Marker marker = new Marker(identifier, organisation, module, revision);
-                ivyMappings.put(identifier, marker);
-                Log.info("Added mapping from Maven " + identifier.asString() + " to Ivy " + marker.asString());
+        } catch (final IOException | XMLStreamException exception) {
+            throw new ParseException(file.toURI(), exception);
+        }
+
+        if (maven == null) Log.warn("No maven info found in " + file);
+        return new Index.Entry(path, modified, size, maven, organisation, module, revision);
+    }
+
+    /* ====================================================================== */
+
+    private static final class Scan extends RecursiveTask<List<Index.Entry>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File directory;
+        private final String path;
+        private final Map<String, Index.Entry> previous;
+        private final AtomicInteger parsed;
+
+        private Scan(File directory, String path, Map<String, Index.Entry> previous, AtomicInteger parsed) {
+            this.directory = directory;
+            this.path = path;
+            this.previous = previous;
+            this.parsed = parsed;
+        }
+
+        @Override
+        protected List<Index.Entry> compute() {
+            final File children[] = directory.listFiles();
+            if (children == null) throw new IllegalStateException("Unable to list " + directory);
+
+            /* Fork a task per subdirectory, look at files found here meanwhile */
+            final List<Scan> scans = new ArrayList<>();
+            final List<Index.Entry> entries = new ArrayList<>();
+            for (final File child: children) {
+                final String childPath = path + child.getName();
+                if (child.isDirectory()) {
+                    final Scan scan = new Scan(child, childPath + "/", previous, parsed);
+                    scan.fork();
+                    scans.add(scan);
+                } else if (child.isFile() && child.getName().equals("ivy.xml")) {
+                    final long modified = child.lastModified();
+                    final long size = child.length();
+                    final Index.Entry entry = previous.get(childPath);
+                    if ((entry != null) && entry.matches(modified, size)) {
+                        entries.add(entry);
+                    } else {
+                        entries.add(scan(child, childPath, modified, size));
+                        parsed.incrementAndGet();
+                    }
+                }
             }
+            for (final Scan scan: scans) entries.addAll(scan.join());
+            return entries;
         }
     }
 
@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.github.pfumagalli.demavenizer.Strings;
 import com.github.pfumagalli.demavenizer.maven.Identifier;
 
 public class Marker implements Comparable<Marker> {
@@ -12,13 +13,15 @@ public class Marker implements Comparable<Marker> {
     private final String organisation;
     private final String module;
     private final Revision revision;
+    private final int hash;
 
     public Marker(Identifier identifier, String organisation, String module, String revision) {
         this.identifier = identifier;
-        this.organisation = organisation;
-        this.module = module;
-        this.revision = new Revision(revision);
+        this.organisation = Strings.intern(organisation);
+        this.module = Strings.intern(module);
+        this.revision = Revision.valueOf(revision);
         validate();
+        hash = hash();
     }
 
     public Marker(Identifier identifier, String marker) {
@@ -26,15 +29,16 @@ public class Marker implements Comparable<Marker> {
         final int hash1 = marker.indexOf('#');
         final int hash2 = marker.indexOf('#', hash1 + 1);
         if (hash1 < 0) throw new IllegalArgumentException("Invalid marker \"" + marker + "\"");
-        organisation = marker.substring(0, hash1).trim();
+        organisation = Strings.intern(marker.substring(0, hash1).trim());
         if (hash2 < 0) {
-            module = marker.substring(hash1 + 1).trim();
-            revision = new Revision(identifier.getVersion());
+            module = Strings.intern(marker.substring(hash1 + 1).trim());
+            revision = Revision.valueOf(identifier.getVersion());
         } else {
-            module = marker.substring(hash1 + 1, hash2).trim();
-            revision = new Revision(marker.substring(hash2 + 1).trim());
+            module = Strings.intern(marker.substring(hash1 + 1, hash2).trim());
+            revision = Revision.valueOf(marker.substring(hash2 + 1).trim());
         }
         validate();
+        hash = hash();
     }
 
     private void validate() {
@@ -48,6 +52,11 @@ public class Marker implements Comparable<Marker> {
         if ("".equals(module)) throw new IllegalArgumentException("Empty module in " + this);
     }
 
+    private int hash() {
+        final int hash = (organisation.hashCode() * 31) + module.hashCode();
+        return (hash * 31) + revision.hashCode();
+    }
+
     public Identifier getIdentifier() {
         return identifier;
     }
@@ -84,16 +93,23 @@ public class Marker implements Comparable<Marker> {
     @Override
     public int compareTo(Marker marker) {
         if (marker == null) throw new NullPointerException();
-        final int organisation = this.organisation.compareTo(marker.organisation);
-        if (organisation != 0) return organisation;
-        final int module = this.organisation.compareTo(marker.module);
-        if (module != 0) return module;
-        return revision.compareTo(revision);
+        if (marker == this) return 0;
+
+        /* Interned strings, most of the time the same instance */
+        if (organisation != marker.organisation) {
+            final int organisation = this.organisation.compareTo(marker.organisation);
+            if (organisation != 0) return organisation;
+        }
+        if (module != marker.module) {
+            final int module = this.module.compareTo(marker.module);
+            if (module != 0) return module;
+        }
+        return revision.compareTo(marker.revision);
     }
 
     @Override
     public int hashCode() {
-        return asString().hashCode();
+        return hash;
     }
 
     @Override
@@ -107,10 +123,10 @@ public class Marker implements Comparable<Marker> {
         if (object == this) return true;
         try {
             final Marker marker = (Marker) object;
-            return marker.organisation.equals(organisation) &&
-                   marker.getModule().equals(module) &&
-                   (marker.getRevision() == null ? revision == null :
-                       marker.getRevision().equals(revision));
+            return marker.hash == hash &&
+                   (marker.organisation == organisation || marker.organisation.equals(organisation)) &&
+                   (marker.module == module || marker.module.equals(module)) &&
+                   marker.revision.equals(revision);
         } catch (final ClassCastException exception) {
             return false;
         }
@@ -1,61 +1,265 @@
 package com.github.pfumagalli.demavenizer.ivy;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Revisions ordered like Maven's own "ComparableVersion": any number of
+ * dot separated numbers, qualifiers ranked "alpha", "beta", "milestone",
+ * "rc", "snapshot", release ("", "ga", "final"), "sp", then anything else
+ * alphabetically, with dashes and digit/letter transitions opening nested
+ * lists ("1.0-beta-2", "2.0b3") and trailing nulls ("1.0.0", "1-final")
+ * ignored.
+ *
+ * Each revision is parsed once into a flat sort key, a pre-order walk of
+ * the normalized items: comparing two revisions walks two arrays, without
+ * ever looking at the original text again (which toString() returns).
+ *
+ * Maven's quirk is kept: a list compares to nothing by its first item only,
+ * so "1-0.1" and "1-0.2" both compare the same as "1", but not as each
+ * other. Such a "same" is not transitive, so equals() stays stricter: two
+ * revisions are equal when their normalized items are, and compareTo() is
+ * not consistent with equals() for these (sorted maps keep only one).
+ */
 public final class Revision implements Comparable<Revision> {
 
-    private final int major;
-    private final int minor;
-    private final int build;
-    private final String mark;
+    /* Item kinds in the sort key */
+    private static final byte NUMBER = 0;
+    private static final byte QUALIFIER = 1;
+    private static final byte LIST = 2;
+    private static final byte END = 3;
+
+    /* Known qualifiers, in order, anything else comes after them */
+    private static final List<String> QUALIFIERS = Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+    private static final String RELEASE = Integer.toString(QUALIFIERS.indexOf(""));
+
+    /* Revisions repeat across markers, mappings and rules: parse each once */
+    private static final Map<String, Revision> revisions = new ConcurrentHashMap<>();
+    private static final int CAPACITY = 1 << 16;
+
+    private final String revision;
+    private final byte kinds[];
+    private final String values[];
+    private final int next[];
+    private final int hash;
 
     public Revision(String revision) {
-        final int dot1 = revision.indexOf('.');
-        final int dot2 = revision.indexOf('.', dot1 + 1);
-
-        /* Figure out the marker */
-        final int dash = revision.indexOf('-');
-        if (dash < 0) {
-            mark = null;
-        } else {
-            final String marker = revision.substring(dash + 1);
-            mark = marker.isEmpty() ? null : marker.toLowerCase();
-            revision = revision.substring(0, dash);
+        this.revision = revision.trim();
+        if (this.revision.isEmpty()) throw new IllegalArgumentException("Empty revision");
+
+        /* Parse in a tree, normalize, then flatten */
+        final List<Object> items = new ArrayList<>();
+        flatten(parse(this.revision.toLowerCase(Locale.ENGLISH)), items);
+        kinds = new byte[items.size() / 2];
+        values = new String[kinds.length];
+        for (int x = 0; x < kinds.length; x ++) {
+            kinds[x] = (Byte) items.get(x * 2);
+            values[x] = (String) items.get((x * 2) + 1);
+        }
+
+        /* Where each item's siblings start, lists skip their whole content */
+        next = new int[kinds.length];
+        final int open[] = new int[kinds.length];
+        int depth = 0;
+        for (int x = 0; x < kinds.length; x ++) {
+            if (kinds[x] == LIST) open[depth ++] = x;
+            else if (kinds[x] == END) next[open[-- depth]] = x + 1;
+            else next[x] = x + 1;
+        }
+
+        /* Consistent with equals (not always with compareTo, see above) */
+        hash = (Arrays.hashCode(kinds) * 31) + Arrays.hashCode(values);
+    }
+
+    public static Revision valueOf(String revision) {
+        final Revision cached = revisions.get(revision);
+        if (cached != null) return cached;
+        final Revision parsed = new Revision(revision);
+        if (revisions.size() >= CAPACITY) revisions.clear(); // just parse them again
+        final Revision previous = revisions.putIfAbsent(revision, parsed);
+        return previous == null ? parsed : previous;
+    }
+
+    /* ====================================================================== */
+
+    /* Same as Maven: "." separates items, "-" and digit/letter transitions open sub-lists */
+    private static List<Object> parse(String version) {
+        final List<Object> root = new ArrayList<>();
+        final List<List<Object>> lists = new ArrayList<>();
+        List<Object> list = root;
+        lists.add(list);
+
+        boolean digit = false;
+        int start = 0;
+        for (int x = 0; x < version.length(); x ++) {
+            final char character = version.charAt(x);
+            if ((character == '.') || (character == '-')) {
+                list.add(x == start ? (Object) new Digits("0") : item(digit, version.substring(start, x), false));
+                start = x + 1;
+                if (character == '-') {
+                    final List<Object> sublist = new ArrayList<>();
+                    list.add(sublist);
+                    lists.add(list = sublist);
+                }
+            } else if (Character.isDigit(character)) {
+                if (!digit && (x > start)) {
+                    list.add(item(false, version.substring(start, x), true));
+                    start = x;
+                    final List<Object> sublist = new ArrayList<>();
+                    list.add(sublist);
+                    lists.add(list = sublist);
+                }
+                digit = true;
+            } else {
+                if (digit && (x > start)) {
+                    list.add(item(true, version.substring(start, x), false));
+                    start = x;
+                    final List<Object> sublist = new ArrayList<>();
+                    list.add(sublist);
+                    lists.add(list = sublist);
+                }
+                digit = false;
+            }
+        }
+        if (version.length() > start) list.add(item(digit, version.substring(start), false));
+
+        /* Innermost lists first, dropping trailing nulls */
+        for (int x = lists.size() - 1; x >= 0; x --) {
+            final List<Object> normalize = lists.get(x);
+            for (int y = normalize.size() - 1; y >= 0; y --) {
+                final Object item = normalize.get(y);
+                if (isNull(item)) normalize.remove(y);
+                else if (!(item instanceof List)) break;
+            }
+        }
+        return root;
+    }
+
+    private static Object item(boolean digit, String value, boolean followedByDigit) {
+        if (digit) return new Digits(value);
+
+        /* Single letter shortcuts, "1a1" is "1-alpha-1" */
+        if (followedByDigit && (value.length() == 1)) {
+            switch (value.charAt(0)) {
+                case 'a': value = "alpha"; break;
+                case 'b': value = "beta"; break;
+                case 'm': value = "milestone"; break;
+                default: break;
+            }
         }
 
-        /* Figure out the main version numbers */
-        if (dot1 < 0) {
-            major = Integer.parseInt(revision);
-            minor = -1;
-            build = -1;
-        } else {
-            major = Integer.parseInt(revision.substring(0, dot1).trim());
-            if (dot2 < 0) {
-                minor = Integer.parseInt(revision.substring(dot1 + 1).trim());
-                build = -1;
+        /* Aliases, then the rank (as a string, exactly like Maven) */
+        if ("ga".equals(value) || "final".equals(value) || "release".equals(value)) value = "";
+        else if ("cr".equals(value)) value = "rc";
+        final int index = QUALIFIERS.indexOf(value);
+        return new Qualifier(index < 0 ? QUALIFIERS.size() + "-" + value : Integer.toString(index));
+    }
+
+    private static boolean isNull(Object item) {
+        if (item instanceof Digits) return "0".equals(((Digits) item).value);
+        if (item instanceof Qualifier) return RELEASE.equals(((Qualifier) item).value);
+        return ((List<?>) item).isEmpty();
+    }
+
+    private static void flatten(List<?> list, List<Object> items) {
+        items.add(LIST);
+        items.add(null);
+        for (final Object item: list) {
+            if (item instanceof Digits) {
+                items.add(NUMBER);
+                items.add(((Digits) item).value);
+            } else if (item instanceof Qualifier) {
+                items.add(QUALIFIER);
+                items.add(((Qualifier) item).value);
             } else {
-                minor = Integer.parseInt(revision.substring(dot1 + 1, dot2).trim());
-                build = Integer.parseInt(revision.substring(dot2 + 1).trim());
+                flatten((List<?>) item, items);
             }
         }
+        items.add(END);
+        items.add(null);
+    }
+
+    /* Parsing only, numbers of any length without leading zeroes */
+    private static final class Digits {
+        private final String value;
+        private Digits(String value) {
+            int start = 0;
+            while ((start < value.length() - 1) && (value.charAt(start) == '0')) start ++;
+            this.value = value.substring(start);
+        }
+    }
+
+    private static final class Qualifier {
+        private final String value;
+        private Qualifier(String value) {
+            this.value = value;
+        }
     }
 
+    /* ====================================================================== */
+
     @Override
     public int compareTo(Revision revision) {
         if (revision == null) throw new NullPointerException();
+        if (revision == this) return 0;
+        return compareLists(this, 1, revision, 1);
+    }
+
+    /* Both positions are just past a list start, missing items are nulls */
+    private static int compareLists(Revision revision1, int position1, Revision revision2, int position2) {
+        while (true) {
+            final boolean end1 = revision1.kinds[position1] == END;
+            final boolean end2 = revision2.kinds[position2] == END;
+            if (end1 && end2) return 0;
+
+            final int result = end1 ? - compareNull(revision2, position2) :
+                               end2 ? compareNull(revision1, position1) :
+                               compareItems(revision1, position1, revision2, position2);
+            if (result != 0) return result;
+
+            if (!end1) position1 = revision1.next[position1];
+            if (!end2) position2 = revision2.next[position2];
+        }
+    }
+
+    private static int compareItems(Revision revision1, int position1, Revision revision2, int position2) {
+        final byte kind1 = revision1.kinds[position1];
+        final byte kind2 = revision2.kinds[position2];
+
+        /* Numbers above lists above qualifiers */
+        if (kind1 != kind2) {
+            if (kind1 == NUMBER) return 1;
+            if (kind2 == NUMBER) return -1;
+            return kind1 == LIST ? 1 : -1;
+        }
+
+        final String value1 = revision1.values[position1];
+        final String value2 = revision2.values[position2];
+        switch (kind1) {
+            case NUMBER:
+                if (value1.length() != value2.length()) return value1.length() < value2.length() ? -1 : 1;
+                return Integer.signum(value1.compareTo(value2));
+            case QUALIFIER:
+                return Integer.signum(value1.compareTo(value2));
+            default:
+                return compareLists(revision1, position1 + 1, revision2, position2 + 1);
+        }
+    }
 
-        final int major = Integer.compare(this.major, revision.major);
-        if (major != 0) return major;
-        final int minor = Integer.compare(this.minor, revision.minor);
-        if (minor != 0) return minor;
-        final int build = Integer.compare(this.build, revision.build);
-        if (build != 0) return build;
-
-        /* The null mark indicates no funky revisions (beta, release candidate, ...) */
-        if (mark == null) {
-            /* This "null" marked version is above any marked version */
-            return revision.mark == null ? 0 : 1;
-        } else {
-            /* Two marked version simply get compared lexically (and pray) */
-            return revision.mark == null ? -1 : mark.compareTo(revision.mark);
+    /* How an item compares to nothing at all ("1.0" against "1.0-beta") */
+    private static int compareNull(Revision revision, int position) {
+        switch (revision.kinds[position]) {
+            case NUMBER:
+                return "0".equals(revision.values[position]) ? 0 : 1;
+            case QUALIFIER:
+                return Integer.signum(revision.values[position].compareTo(RELEASE));
+            default:
+                if (revision.kinds[position + 1] == END) return 0;
+                return compareNull(revision, position + 1);
         }
     }
 
@@ -65,9 +269,9 @@ public final class Revision implements Comparable<Revision> {
         if (object == null) return false;
         try {
             final Revision revision = (Revision) object;
-            return revision.major == major &&
-                   revision.minor == minor &&
-                   revision.build == build;
+            return revision.hash == hash &&
+                   Arrays.equals(revision.kinds, kinds) &&
+                   Arrays.equals(revision.values, values);
         } catch (final ClassCastException exception) {
             return false;
         }
@@ -75,16 +279,12 @@ public final class Revision implements Comparable<Revision> {
 
     @Override
     public String toString() {
-        final StringBuilder builder = new StringBuilder().append(major);
-        if (minor >= 0) builder.append('.').append(minor);
-        if (build >= 0) builder.append('.').append(build);
-        if (mark != null) builder.append('-').append(mark);
-        return builder.toString();
+        return revision;
     }
 
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return hash;
     }
 
 }
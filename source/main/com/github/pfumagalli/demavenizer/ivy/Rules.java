@@ -0,0 +1,361 @@
+package com.github.pfumagalli.demavenizer.ivy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import com.github.pfumagalli.demavenizer.Log;
+import com.github.pfumagalli.demavenizer.maven.Identifier;
+
+/*
+ * Maven to Maven mapping rules, as in "mappings.properties":
+ *
+ *   group#artifact#version = group#artifact#version   (exact, as always)
+ *   group#artifact         = group#artifact[#version]  (all versions)
+ *   org.eclipse.*#jetty-*  = org.eclipse.jetty#*       (group prefix, artifact glob)
+ *   group#artifact#[1.0,2.0) = ...                     (Maven style version range)
+ *
+ * A "*" component on the right hand side keeps the matched group, artifact
+ * or version. Patterns are compiled in a trie of group segments, so lookups
+ * only look at rules for the group in question (and its parents), and
+ * artifact globs are bucketed by their literal prefix ("jetty-" above).
+ * Rules are sorted once, when frozen after loading.
+ */
+final class Rules {
+
+    private final Map<Identifier, Identifier> exact = new HashMap<>();
+    private final Branch root = new Branch();
+    private final Set<Logged> logged = Collections.newSetFromMap(new ConcurrentHashMap<Logged, Boolean>());
+    private volatile boolean frozen;
+
+    Rules() {
+        /* Nothing to do */
+    }
+
+    /* ====================================================================== */
+
+    void add(String source, String target) {
+        if (frozen) throw new IllegalStateException("Rules are frozen");
+        final String sourceParts[] = split(source);
+        final String targetParts[] = split(target);
+        for (int x = 0; x < targetParts.length; x ++) {
+            final String part = targetParts[x];
+            if (!"*".equals(part) && ((part.indexOf('*') >= 0) || (part.indexOf('?') >= 0)))
+                throw new IllegalArgumentException("Invalid mapping target \"" + target + "\"");
+        }
+
+        /* Plain identifiers keep working exactly as before */
+        final String group = sourceParts[0];
+        final String artifact = sourceParts[1];
+        final String version = sourceParts.length > 2 ? sourceParts[2] : null;
+        if (!isPattern(group) && !isPattern(artifact) && ((version == null) || !isPattern(version)) && !isRange(version)) {
+            if (target.indexOf('*') < 0) {
+                exact.put(Identifier.valueOf(source), Identifier.valueOf(target));
+                return;
+            }
+        }
+
+        /* Anything else is a rule, hanging off its group in the trie */
+        final Rule rule = new Rule(source, artifact, version, targetParts);
+        Branch branch = root;
+        final String prefix = group.endsWith(".*") ? group.substring(0, group.length() - 2) :
+                              "*".equals(group) ? "" : group;
+        if (isPattern(prefix)) throw new IllegalArgumentException("Invalid group pattern in \"" + source + "\"");
+        if (!prefix.isEmpty()) for (final String segment: prefix.split("\\.")) {
+            Branch child = branch.children.get(segment);
+            if (child == null) branch.children.put(segment, child = new Branch());
+            branch = child;
+        }
+        (prefix.equals(group) ? branch.group : branch.prefix).add(rule);
+    }
+
+    /* Done loading, sort everything once */
+    Rules freeze() {
+        root.freeze();
+        frozen = true;
+        return this;
+    }
+
+    /* Apply the exact mapping, then whatever applies to all (or some) versions */
+    Identifier apply(Identifier identifier) {
+        if (!frozen) throw new IllegalStateException("Rules are not frozen");
+        final Identifier mapped = exact.get(identifier);
+        if (mapped != null) {
+            log(mapped, identifier, "");
+            identifier = mapped;
+        }
+
+        final Identifier unversioned = exact.get(identifier.unversioned());
+        if (unversioned != null) {
+            log(unversioned, identifier, " (unversioned)");
+            return unversioned;
+        }
+
+        final Identifier ruled = match(identifier);
+        if (ruled != null) {
+            log(ruled, identifier, " (rule)");
+            return ruled;
+        }
+        return identifier;
+    }
+
+    /* Warn once per mapping, building the message only then */
+    private void log(Identifier mapped, Identifier identifier, String how) {
+        if (logged.add(new Logged(mapped, identifier)))
+            Log.warn("Using mapped " + mapped.asString() + " instead of " + identifier.asString() + how);
+    }
+
+    /* The most specific rule wins: deepest group first, exact groups before prefixes */
+    private Identifier match(Identifier identifier) {
+        final String segments[] = identifier.getGroupId().split("\\.");
+        final List<Branch> path = new ArrayList<>(segments.length + 1);
+        Branch branch = root;
+        path.add(branch);
+        for (final String segment: segments) {
+            branch = branch.children.get(segment);
+            if (branch == null) break;
+            path.add(branch);
+        }
+
+        /* Exact group only if we walked all the segments */
+        if (path.size() == segments.length + 1) {
+            final Identifier mapped = path.get(segments.length).group.match(identifier);
+            if (mapped != null) return mapped;
+        }
+
+        /* Prefixes only match groups with more segments than themselves */
+        for (int x = Math.min(path.size(), segments.length) - 1; x >= 0; x --) {
+            final Identifier mapped = path.get(x).prefix.match(identifier);
+            if (mapped != null) return mapped;
+        }
+        return null;
+    }
+
+    /* ====================================================================== */
+
+    private static String[] split(String identifier) {
+        final String parts[] = identifier.trim().split("#", -1);
+        if ((parts.length < 2) || (parts.length > 3))
+            throw new IllegalArgumentException("Invalid identifier \"" + identifier + "\"");
+        for (int x = 0; x < parts.length; x ++) {
+            parts[x] = parts[x].trim();
+            if (parts[x].isEmpty()) throw new IllegalArgumentException("Invalid identifier \"" + identifier + "\"");
+        }
+        return parts;
+    }
+
+    private static boolean isPattern(String string) {
+        return (string.indexOf('*') >= 0) || (string.indexOf('?') >= 0);
+    }
+
+    private static boolean isRange(String string) {
+        return (string != null) && (string.startsWith("[") || string.startsWith("("));
+    }
+
+    /* ====================================================================== */
+
+    private static final class Branch {
+
+        private final Map<String, Branch> children = new HashMap<>();
+        private final Bucket group = new Bucket();
+        private final Bucket prefix = new Bucket();
+
+        private void freeze() {
+            group.freeze();
+            prefix.freeze();
+            for (final Branch child: children.values()) child.freeze();
+        }
+    }
+
+    /* Rules by literal artifact, and artifact globs by their literal prefix */
+    private static final class Bucket {
+
+        private final Map<String, List<Rule>> artifacts = new HashMap<>();
+        private final Map<String, List<Rule>> globs = new HashMap<>();
+        private int longest = 0;
+
+        private void add(Rule rule) {
+            final String key = rule.artifact != null ? rule.artifact : rule.prefix;
+            final Map<String, List<Rule>> rules = rule.artifact != null ? artifacts : globs;
+            List<Rule> list = rules.get(key);
+            if (list == null) rules.put(key, list = new ArrayList<>());
+            list.add(rule);
+            if (rule.artifact == null) longest = Math.max(longest, key.length());
+        }
+
+        private void freeze() {
+            for (final List<Rule> rules: artifacts.values()) Collections.sort(rules, Rule.SPECIFICITY);
+            for (final List<Rule> rules: globs.values()) Collections.sort(rules, Rule.SPECIFICITY);
+        }
+
+        private Identifier match(Identifier identifier) {
+            final String artifact = identifier.getArtifactId();
+            final List<Rule> rules = artifacts.get(artifact);
+            if (rules != null) for (final Rule rule: rules) {
+                if (rule.matches(identifier)) return rule.apply(identifier);
+            }
+            if (globs.isEmpty()) return null;
+
+            /* The most specific of the first matches in each bucket our artifact starts with */
+            Rule best = null;
+            for (int x = Math.min(longest, artifact.length()); x >= 0; x --) {
+                final List<Rule> bucket = globs.get(artifact.substring(0, x));
+                if (bucket != null) for (final Rule rule: bucket) {
+                    if ((best != null) && (Rule.SPECIFICITY.compare(rule, best) >= 0)) break;
+                    if (rule.matches(identifier)) {
+                        best = rule;
+                        break;
+                    }
+                }
+            }
+            return best == null ? null : best.apply(identifier);
+        }
+    }
+
+    private static final class Rule {
+
+        /* Versioned before unversioned, longer globs before shorter ones, then alphabetically */
+        private static final Comparator<Rule> SPECIFICITY = new Comparator<Rule>() {
+            @Override
+            public int compare(Rule rule1, Rule rule2) {
+                final int versioned = Boolean.compare(rule2.isVersioned(), rule1.isVersioned());
+                if (versioned != 0) return versioned;
+                final int length = Integer.compare(rule2.length, rule1.length);
+                if (length != 0) return length;
+                return rule1.source.compareTo(rule2.source);
+            }
+        };
+
+        private final String source;
+        private final String artifact;
+        private final Pattern glob;
+        private final String prefix;
+        private final int length;
+        private final String version;
+        private final Revision lower;
+        private final Revision upper;
+        private final boolean lowerInclusive;
+        private final boolean upperInclusive;
+        private final String target[];
+
+        private Rule(String source, String artifact, String version, String target[]) {
+            this.source = source;
+            this.target = target;
+
+            /* Artifact, literal or glob */
+            if (isPattern(artifact)) {
+                final StringBuilder regex = new StringBuilder();
+                int length = 0;
+                for (final char character: artifact.toCharArray()) {
+                    if (character == '*') regex.append(".*");
+                    else if (character == '?') regex.append('.');
+                    else {
+                        regex.append(Pattern.quote(Character.toString(character)));
+                        length ++;
+                    }
+                }
+                int wildcard = 0;
+                while ((artifact.charAt(wildcard) != '*') && (artifact.charAt(wildcard) != '?')) wildcard ++;
+                this.artifact = null;
+                this.glob = Pattern.compile(regex.toString());
+                this.prefix = artifact.substring(0, wildcard);
+                this.length = length;
+            } else {
+                this.artifact = artifact;
+                this.glob = null;
+                this.prefix = null;
+                this.length = artifact.length();
+            }
+
+            /* Version, any, literal or range */
+            if ((version == null) || "*".equals(version)) {
+                this.version = null;
+                lower = upper = null;
+                lowerInclusive = upperInclusive = false;
+            } else if (isRange(version)) {
+                if (!version.endsWith("]") && !version.endsWith(")"))
+                    throw new IllegalArgumentException("Invalid version range in \"" + source + "\"");
+                final String range = version.substring(1, version.length() - 1);
+                final int comma = range.indexOf(',');
+                final String from = (comma < 0 ? range : range.substring(0, comma)).trim();
+                final String to = (comma < 0 ? range : range.substring(comma + 1)).trim();
+                this.version = version;
+                lower = from.isEmpty() ? null : Revision.valueOf(from);
+                upper = to.isEmpty() ? null : Revision.valueOf(to);
+                lowerInclusive = version.startsWith("[");
+                upperInclusive = version.endsWith("]");
+            } else if (isPattern(version)) {
+                throw new IllegalArgumentException("Invalid version in \"" + source + "\"");
+            } else {
+                this.version = version;
+                lower = upper = Revision.valueOf(version);
+                lowerInclusive = upperInclusive = true;
+            }
+        }
+
+        private boolean isVersioned() {
+            return version != null;
+        }
+
+        private boolean matches(Identifier identifier) {
+            if ((glob != null) && !glob.matcher(identifier.getArtifactId()).matches()) return false;
+            if (version == null) return true;
+            if (identifier.getVersion() == null) return false;
+
+            final Revision revision;
+            try {
+                revision = Revision.valueOf(identifier.getVersion());
+            } catch (final IllegalArgumentException exception) {
+                return false;
+            }
+            if (lower != null) {
+                final int compare = revision.compareTo(lower);
+                if ((compare < 0) || ((compare == 0) && !lowerInclusive)) return false;
+            }
+            if (upper != null) {
+                final int compare = revision.compareTo(upper);
+                if ((compare > 0) || ((compare == 0) && !upperInclusive)) return false;
+            }
+            return true;
+        }
+
+        private Identifier apply(Identifier identifier) {
+            final String group = "*".equals(target[0]) ? identifier.getGroupId() : target[0];
+            final String artifact = "*".equals(target[1]) ? identifier.getArtifactId() : target[1];
+            final String version = target.length < 3 ? null :
+                                   "*".equals(target[2]) ? identifier.getVersion() : target[2];
+            return Identifier.valueOf(group, artifact, version);
+        }
+    }
+
+    /* A mapping we already warned about */
+    private static final class Logged {
+
+        private final Identifier mapped;
+        private final Identifier identifier;
+
+        private Logged(Identifier mapped, Identifier identifier) {
+            this.mapped = mapped;
+            this.identifier = identifier;
+        }
+
+        @Override
+        public int hashCode() {
+            return (mapped.hashCode() * 31) + identifier.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) return true;
+            if (!(object instanceof Logged)) return false;
+            final Logged logged = (Logged) object;
+            return mapped.equals(logged.mapped) && identifier.equals(logged.identifier);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.pfumagalli.demavenizer.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import com.github.pfumagalli.demavenizer.Log;
+import com.github.pfumagalli.demavenizer.net.Response;
+import com.github.pfumagalli.demavenizer.net.Transport;
+import com.github.pfumagalli.demavenizer.parser.Node;
+import com.github.pfumagalli.demavenizer.parser.ParseException;
+import com.github.pfumagalli.demavenizer.parser.Parser;
+
+public class Cache {
+
+    private static final String LAST_MODIFIED = "last-modified";
+    private static final String ETAG = "etag";
+    private static final String LOCATION = "location";
+
+    private final File directory;
+
+    public Cache(File directory) {
+        assert (directory != null): "Null cache directory";
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /* Parse the document at "path" in "base", immutable ones never get revalidated */
+    public Node parse(URI base, String path, boolean immutable)
+    throws ParseException {
+        final URI uri = base.resolve(path);
+
+        /* Only HTTP gets cached, anything else is local enough */
+        final String scheme = uri.getScheme();
+        if (!("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)))
+            return Parser.parse(uri);
+
+        final File body = getFile(base, path);
+        final File meta = new File(body.getParentFile(), body.getName() + ".properties");
+        final Properties properties = body.isFile() ? load(meta) : null;
+
+        /* Releases never change, no need to even ask */
+        if (immutable && (properties != null)) return parse(body, uri, properties);
+
+        try {
+            final Map<String, String> headers = new HashMap<>();
+            if (properties != null) {
+                final long lastModified = Long.parseLong(properties.getProperty(LAST_MODIFIED, "0"));
+                final String etag = properties.getProperty(ETAG);
+                if (lastModified > 0) headers.put("If-Modified-Since", formatDate(lastModified));
+                if (etag != null) headers.put("If-None-Match", etag);
+            }
+
+            final Response response = Transport.getDefault().request("GET", uri, headers);
+            try {
+                if ((response.getStatus() == Response.NOT_MODIFIED) && (properties != null))
+                    return parse(body, uri, properties);
+
+                /* Anything else is an error, but we might still have a stale copy */
+                response.ensure(Response.OK);
+                store(response, body, meta, uri);
+            } finally {
+                response.close();
+            }
+
+            return parse(body, uri, load(meta));
+
+        } catch (final IOException exception) {
+            if (properties == null) throw new ParseException(uri, exception);
+            Log.warn("Unable to revalidate " + uri + ", using cached copy (" + exception.getMessage() + ")");
+            return parse(body, uri, properties);
+        }
+    }
+
+    /* ====================================================================== */
+
+    private File getFile(URI base, String path) {
+        final StringBuilder builder = new StringBuilder(base.getScheme().toLowerCase())
+                                                .append('/').append(base.getHost().toLowerCase());
+        if (base.getPort() >= 0) builder.append('_').append(base.getPort());
+        builder.append('/').append(base.getPath()).append('/').append(path);
+
+        /* Normalize away any funky path components */
+        final StringBuilder normalized = new StringBuilder();
+        for (final String component: builder.toString().split("/")) {
+            if (component.isEmpty() || ".".equals(component) || "..".equals(component)) continue;
+            normalized.append(File.separatorChar).append(component);
+        }
+        return new File(directory, normalized.substring(1));
+    }
+
+    private static String formatDate(long time) {
+        final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(time));
+    }
+
+    private void store(Response response, File body, File meta, URI uri)
+    throws IOException {
+        final File parent = body.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+            throw new IOException("Unable to create cache directory " + parent);
+
+        /* Body first, into a temporary file and moved in place */
+        final File temporary = File.createTempFile(body.getName(), ".tmp", parent);
+        try {
+            final InputStream input = response.getInputStream();
+            final OutputStream output = new FileOutputStream(temporary);
+            try {
+                final byte buffer[] = new byte[4096];
+                int size;
+                while ((size = input.read(buffer)) >= 0) output.write(buffer, 0, size);
+            } finally {
+                output.close();
+                input.close();
+            }
+            Files.move(temporary.toPath(), body.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporary.delete();
+        }
+
+        /* Then the validators */
+        final Properties properties = new Properties();
+        properties.setProperty(LOCATION, uri.toASCIIString());
+        properties.setProperty(LAST_MODIFIED, Long.toString(response.getLastModified()));
+        final String etag = response.getHeader("ETag");
+        if (etag != null) properties.setProperty(ETAG, etag);
+
+        final File temporaryMeta = File.createTempFile(meta.getName(), ".tmp", parent);
+        try {
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryMeta), Charset.forName("UTF-8"));
+            try {
+                properties.store(writer, null);
+            } finally {
+                writer.close();
+            }
+            Files.move(temporaryMeta.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temporaryMeta.delete();
+        }
+    }
+
+    private Node parse(File body, URI uri, Properties properties) {
+        final Date lastModified = new Date(Long.parseLong(properties.getProperty(LAST_MODIFIED, "0")));
+        try {
+            final InputStream input = new FileInputStream(body);
+            try {
+                return Parser.parse(input, uri, lastModified);
+            } finally {
+                input.close();
+            }
+        } catch (final IOException exception) {
+            throw new ParseException(uri, exception);
+        }
+    }
+
+    private Properties load(File meta) {
+        if (!meta.isFile()) return null;
+        final Properties properties = new Properties();
+        try {
+            final Reader reader = new InputStreamReader(new FileInputStream(meta), Charset.forName("UTF-8"));
+            try {
+                properties.load(reader);
+            } finally {
+                reader.close();
+            }
+            return properties;
+        } catch (final IOException exception) {
+            Log.warn("Ignoring unreadable cache entry " + meta);
+            return null;
+        }
+    }
+}
@@ -8,12 +8,20 @@ public class Dependency extends Identifier {
     private final boolean optional;
 
     public Dependency(Project project, Node node) {
-        super(null, project.getProperties(), node);
+        super(managed(project, node), project.getProperties(), node);
         final String scope = node.getChildText("scope", project.getProperties(), "compile");
         this.scope = Scope.valueOf(scope.toUpperCase());
         optional = Boolean.parseBoolean(node.getChildText("optional", project.getProperties(), "false"));
     }
 
+    /* Without a version of its own, a dependency gets the managed one (if any) */
+    private static Identifier managed(Project project, Node node) {
+        final Identifier identifier = new Identifier(null, project.getProperties(), node);
+        if (identifier.getVersion() != null) return null;
+        final String version = project.getManagedVersion(identifier);
+        return version == null ? null : new Identifier(identifier.getGroupId(), identifier.getArtifactId(), version);
+    }
+
     public Scope getScope() {
         return scope;
     }
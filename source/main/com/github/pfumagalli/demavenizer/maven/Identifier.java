@@ -1,42 +1,62 @@
 package com.github.pfumagalli.demavenizer.maven;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.github.pfumagalli.demavenizer.Strings;
 import com.github.pfumagalli.demavenizer.parser.Node;
 
 public class Identifier implements Comparable<Identifier> {
 
+    /* Canonical (plain) identifiers, shared by the mapper, rules and repository */
+    private static final Map<Identifier, Identifier> identifiers = new ConcurrentHashMap<>();
+    private static final int CAPACITY = 1 << 16;
+
     private final String groupId;
     private final String artifactId;
     private final String version;
+    private final int hash;
+    private volatile Identifier unversioned;
 
     public Identifier(Identifier identifier, Map<?, ?> context, Node node) {
-        groupId = node.getChildText("groupId",  context,  identifier != null ? identifier.getGroupId() : null);
-        artifactId = node.getChildText("artifactId",  context,  identifier != null ? identifier.getArtifactId() : null);
-        version = node.getChildText("version",  context,  identifier != null ? identifier.getVersion() : null);;
+        groupId = Strings.intern(node.getChildText("groupId",  context,  identifier != null ? identifier.getGroupId() : null));
+        artifactId = Strings.intern(node.getChildText("artifactId",  context,  identifier != null ? identifier.getArtifactId() : null));
+        version = Strings.intern(node.getChildText("version",  context,  identifier != null ? identifier.getVersion() : null));
         validate();
+        hash = hash();
     }
 
     public Identifier(String groupId, String artifactId, String version) {
-        this.groupId = groupId == null ? null : groupId.trim();
-        this.artifactId = artifactId == null ? null : artifactId.trim();
-        this.version = version == null ? null : version.trim();
+        this.groupId = groupId == null ? null : Strings.intern(groupId.trim());
+        this.artifactId = artifactId == null ? null : Strings.intern(artifactId.trim());
+        this.version = version == null ? null : Strings.intern(version.trim());
         validate();
+        hash = hash();
     }
 
     public Identifier(String identifier) {
         final int hash1 = identifier.indexOf('#');
         final int hash2 = identifier.indexOf('#', hash1 + 1);
         if (hash1 < 0) throw new IllegalArgumentException("Invalid identifier \"" + identifier + "\"");
-        groupId = identifier.substring(0, hash1).trim();
+        groupId = Strings.intern(identifier.substring(0, hash1).trim());
         if (hash2 < 0) {
-            artifactId = identifier.substring(hash1 + 1).trim();
+            artifactId = Strings.intern(identifier.substring(hash1 + 1).trim());
             version = null;
         } else {
-            artifactId = identifier.substring(hash1 + 1, hash2).trim();
-            version = identifier.substring(hash2 + 1).trim();
+            artifactId = Strings.intern(identifier.substring(hash1 + 1, hash2).trim());
+            version = Strings.intern(identifier.substring(hash2 + 1).trim());
         }
         validate();
+        hash = hash();
+    }
+
+    /* The one shared instance for some coordinates */
+    public static Identifier valueOf(String groupId, String artifactId, String version) {
+        return new Identifier(groupId, artifactId, version).canonical();
+    }
+
+    public static Identifier valueOf(String identifier) {
+        return new Identifier(identifier).canonical();
     }
 
     private void validate() {
@@ -52,6 +72,11 @@ public class Identifier implements Comparable<Identifier> {
 
     }
 
+    private int hash() {
+        final int hash = (groupId.hashCode() * 31) + artifactId.hashCode();
+        return (hash * 31) + (version == null ? 0 : version.hashCode());
+    }
+
     public String getGroupId() {
         return groupId;
     }
@@ -64,8 +89,20 @@ public class Identifier implements Comparable<Identifier> {
         return version;
     }
 
+    /* Projects and dependencies are never canonical, plain copies are */
+    public Identifier canonical() {
+        final Identifier canonical = identifiers.get(this);
+        if (canonical != null) return canonical;
+        final Identifier plain = getClass() == Identifier.class ? this : new Identifier(groupId, artifactId, version);
+        if (identifiers.size() >= CAPACITY) identifiers.clear(); // equality never relies on identity
+        final Identifier previous = identifiers.putIfAbsent(plain, plain);
+        return previous == null ? plain : previous;
+    }
+
     public Identifier unversioned() {
-        return new Identifier(groupId, artifactId, null);
+        Identifier unversioned = this.unversioned;
+        if (unversioned == null) this.unversioned = unversioned = valueOf(groupId, artifactId, null);
+        return unversioned;
     }
 
     public String asString() {
@@ -79,18 +116,26 @@ public class Identifier implements Comparable<Identifier> {
     @Override
     public int compareTo(Identifier identifier) {
         if (identifier == null) throw new NullPointerException();
-        final int organisation = groupId.compareTo(identifier.groupId);
-        if (organisation != 0) return organisation;
-        final int module = artifactId.compareTo(identifier.artifactId);
-        if (module != 0) return module;
-        if (version == null) return identifier.version == null ? 0 : -1;
+        if (identifier == this) return 0;
+
+        /* Interned strings, most of the time the same instance */
+        if (groupId != identifier.groupId) {
+            final int organisation = groupId.compareTo(identifier.groupId);
+            if (organisation != 0) return organisation;
+        }
+        if (artifactId != identifier.artifactId) {
+            final int module = artifactId.compareTo(identifier.artifactId);
+            if (module != 0) return module;
+        }
+        if (version == identifier.version) return 0;
+        if (version == null) return -1;
         if (identifier.version == null) return 1;
         return version.compareTo(identifier.version);
     }
 
     @Override
     public int hashCode() {
-        return asString().hashCode();
+        return hash;
     }
 
     @Override
@@ -104,12 +149,16 @@ public class Identifier implements Comparable<Identifier> {
         if (object == this) return true;
         try {
             final Identifier identifier = (Identifier) object;
-            return identifier.groupId.equals(groupId) &&
-                   identifier.getArtifactId().equals(artifactId) &&
-                   (identifier.getVersion() == null ? version == null :
-                       identifier.getVersion().equals(version));
+            return identifier.hash == hash &&
+                   same(identifier.groupId, groupId) &&
+                   same(identifier.artifactId, artifactId) &&
+                   same(identifier.version, version);
         } catch (final ClassCastException exception) {
             return false;
         }
     }
+
+    private static boolean same(String string1, String string2) {
+        return string1 == string2 || ((string1 != null) && string1.equals(string2));
+    }
 }
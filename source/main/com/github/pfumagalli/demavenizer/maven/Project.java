@@ -3,9 +3,13 @@ package com.github.pfumagalli.demavenizer.maven;
 import static com.github.pfumagalli.demavenizer.ivy.Normalizer.normalizeWhitespace;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -15,16 +19,21 @@ import com.github.pfumagalli.demavenizer.parser.Node;
 
 public class Project extends Identifier {
 
-    private final Map<String, Object> properties = new HashMap<>();
-    private final Set<Dependency> dependencies = new HashSet<>();
-    private final Map<License, URI> licenses = new HashMap<>();
+    /* Shared with the parent, copied (licenses, dependencies) or layered (properties) only when we add to them */
+    private final PropertyScope properties;
+    private Set<Dependency> dependencies = Collections.emptySet();
+    private Map<License, URI> licenses = Collections.emptyMap();
+    private boolean ownDependencies = false;
+    private boolean ownLicenses = false;
+
+    /* Managed versions: our own, then our parent's, then imported BOMs (shared) */
+    private final Project parent;
+    private final Map<Identifier, String> managed = new HashMap<>();
+    private final List<Map<Identifier, String>> imported = new ArrayList<>();
     private final Date lastModifiedDate;
 
     private final URI uri;
     private final URI pomURI;
-    private final URI jarURI;
-    private final URI sourcesURI;
-    private final URI javadocURI;
     private final String name;
     private final String description;
 
@@ -39,30 +48,29 @@ public class Project extends Identifier {
 
         /* Remember our URIs */
         pomURI = node.getURI();
-        jarURI = node.getURI().resolve(getArtifactId() + "-" + getVersion() + ".jar");
-        sourcesURI = node.getURI().resolve(getArtifactId() + "-" + getVersion() + "-sources.jar");
-        javadocURI = node.getURI().resolve(getArtifactId() + "-" + getVersion() + "-javadoc.jar");
 
         /* Remember the release date */
         lastModifiedDate = node.getLastModified();
 
         /* Remember ourselves */
-        properties.put("project", this);
-        properties.put("pom", this);
+        final Map<String, Object> self = new HashMap<>();
+        self.put("project", this);
+        self.put("pom", this);
 
         /* Basic variables */
         URI uri = null;
         String name = null;
         String description = null;
 
-        /* Parents */
+        /* Parents (there should be only one, the last one wins) */
+        Project inherited = null;
         for (final Node parent: node.getChildren("parent")) {
-            final Project project = repository.getProject(new Identifier(null, properties, parent));
+            final Project project = repository.getProject(new Identifier(null, self, parent));
 
-            /* Copy licenses, properties and dependencies */
-            licenses.putAll(project.getLicenses());
-            properties.putAll(project.getProperties());
-            dependencies.addAll(project.getDependencies());
+            /* Share licenses and dependencies, until we have our own */
+            licenses = merge(licenses, project.licenses);
+            dependencies = merge(dependencies, project.dependencies);
+            inherited = project;
 
             /* Copy basics */
             uri = project.getURI();
@@ -70,9 +78,10 @@ public class Project extends Identifier {
             description = normalizeWhitespace(project.getDescription());
         }
 
-        /* Re-contextualize ourselves after parents */
-        properties.put("project", this);
-        properties.put("pom", this);
+        /* Our properties over our parent's, re-contextualizing ourselves */
+        this.parent = inherited;
+        properties = new PropertyScope(inherited == null ? null : inherited.properties);
+        properties.putAll(self);
 
         /* Local properties */
         for (final Node properties: node.getChildren("properties")) {
@@ -93,10 +102,31 @@ public class Project extends Identifier {
         this.name = node.getChildText("name", properties, name);
         this.description = node.getChildText("name", properties, description);
 
+        /* Dependency management, before dependencies needing its versions */
+        for (final Node management: node.getChildren("dependencyManagement")) {
+            for (final Node dependencies: management.getChildren("dependencies")) {
+                for (final Node dependency: dependencies.getChildren()) try {
+                    final Identifier managed = new Identifier(null, properties, dependency);
+                    final String scope = dependency.getChildText("scope", properties, "compile");
+                    if (Scope.IMPORT.name().equalsIgnoreCase(scope)) {
+                        if (managed.getVersion() == null) throw new IllegalStateException("No version for imported " + managed.asString());
+                        imported.add(repository.getManagedVersions(managed));
+                    } else if ((managed.getVersion() != null) && !this.managed.containsKey(managed.unversioned())) {
+                        this.managed.put(managed.unversioned(), managed.getVersion());
+                    }
+                } catch (final Exception exception) {
+                    throw new IllegalStateException("Exception in managed dependency of " + this, exception);
+                }
+            }
+        }
+
         /* Dependencies */
         for (final Node dependencies: node.getChildren("dependencies")) {
             for (final Node dependency: dependencies.getChildren()) try {
-                this.dependencies.add(new Dependency(this, dependency));
+                final Dependency parsed = new Dependency(this, dependency);
+                if (this.dependencies.contains(parsed)) continue;
+                this.dependencies = copy(this.dependencies);
+                this.dependencies.add(parsed);
             } catch (final Exception exception) {
                 throw new IllegalStateException("Exception in dependency of " + this, exception);
             }
@@ -129,25 +159,52 @@ public class Project extends Identifier {
                 if (licenseId == null) {
                     throw new IllegalStateException("Null license for name=\"" + licenseName+ "\" url=\"" + licenseUrl + "\"");
                 }
+                this.licenses = copy(this.licenses);
                 this.licenses.put(licenseId, licenseUrl == null ? null : URI.create(normalizeWhitespace(licenseUrl)));
             }
         }
+
+        /* No more changes from here on, children will share what we have */
+        properties.freeze();
     }
 
-    public URI getPomURI() {
-        return pomURI;
+    /* ====================================================================== */
+
+    /* Copy on first write, only when what we have is shared */
+    private Map<License, URI> copy(Map<License, URI> licenses) {
+        if (ownLicenses) return licenses;
+        ownLicenses = true;
+        return new HashMap<>(licenses);
     }
 
-    public URI getJarURI() {
-        return jarURI;
+    private Set<Dependency> copy(Set<Dependency> dependencies) {
+        if (ownDependencies) return dependencies;
+        ownDependencies = true;
+        return new HashSet<>(dependencies);
     }
 
-    public URI getSourcesURI() {
-        return sourcesURI;
+    private static <K, V> Map<K, V> merge(Map<K, V> map, Map<K, V> inherited) {
+        if (map.isEmpty()) return inherited;
+        final Map<K, V> merged = new HashMap<>(map);
+        merged.putAll(inherited);
+        return merged;
     }
 
-    public URI getJavadocURI() {
-        return javadocURI;
+    private static <T> Set<T> merge(Set<T> set, Set<T> inherited) {
+        if (set.isEmpty()) return inherited;
+        final Set<T> merged = new HashSet<>(set);
+        merged.addAll(inherited);
+        return merged;
+    }
+
+    public URI getPomURI() {
+        return pomURI;
+    }
+
+    public URI getArtifactURI(String classifier, String extension) {
+        return pomURI.resolve(getArtifactId() + "-" + getVersion() +
+                              (classifier == null ? "" : "-" + classifier) +
+                              "." + extension);
     }
 
     public URI getURI() {
@@ -167,7 +224,7 @@ public class Project extends Identifier {
     }
 
     public Map<License, URI> getLicenses() {
-        return licenses;
+        return Collections.unmodifiableMap(licenses);
     }
 
     public Map<String, Object> getProperties() {
@@ -175,7 +232,29 @@ public class Project extends Identifier {
     }
 
     public Set<Dependency> getDependencies() {
-        return dependencies;
+        return Collections.unmodifiableSet(dependencies);
+    }
+
+    public String getManagedVersion(Identifier identifier) {
+        final Identifier unversioned = identifier.unversioned();
+        String version = managed.get(unversioned);
+        if ((version == null) && (parent != null)) version = parent.getManagedVersion(unversioned);
+        for (int x = 0; (version == null) && (x < imported.size()); x ++) version = imported.get(x).get(unversioned);
+        return version;
+    }
+
+    /* All managed versions, flattened, in the same order of precedence */
+    public Map<Identifier, String> getManagedVersions() {
+        final Map<Identifier, String> versions = new LinkedHashMap<>(managed);
+        if (parent != null) putAbsent(versions, parent.getManagedVersions());
+        for (final Map<Identifier, String> bom: imported) putAbsent(versions, bom);
+        return Collections.unmodifiableMap(versions);
+    }
+
+    private static void putAbsent(Map<Identifier, String> versions, Map<Identifier, String> more) {
+        for (final Map.Entry<Identifier, String> entry: more.entrySet()) {
+            if (!versions.containsKey(entry.getKey())) versions.put(entry.getKey(), entry.getValue());
+        }
     }
 
 }
@@ -0,0 +1,91 @@
+package com.github.pfumagalli.demavenizer.maven;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * The properties of a project: only its own, plus a reference to its
+ * parent's (frozen) scope, which lookups fall through to. Hundreds of
+ * modules sharing one corporate parent share its properties, too.
+ *
+ * Once frozen, scopes deeper than a few levels take a flat snapshot of
+ * the whole chain on their first read, so long chains are walked once.
+ */
+final class PropertyScope extends AbstractMap<String, Object> {
+
+    private static final int FLATTEN_DEPTH = 4;
+
+    private final PropertyScope parent;
+    private final Map<String, Object> own = new HashMap<>();
+    private final int depth;
+    private volatile boolean frozen;
+    private volatile Map<String, Object> flattened;
+
+    PropertyScope(PropertyScope parent) {
+        if ((parent != null) && !parent.frozen) throw new IllegalStateException("Parent properties not frozen");
+        this.parent = parent;
+        depth = parent == null ? 1 : parent.depth + 1;
+    }
+
+    PropertyScope freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /* ====================================================================== */
+
+    @Override
+    public Object get(Object key) {
+        final Map<String, Object> flattened = flattened();
+        if (flattened != null) return flattened.get(key);
+        for (PropertyScope scope = this; scope != null; scope = scope.parent) {
+            final Object value = scope.own.get(key);
+            if ((value != null) || scope.own.containsKey(key)) return value;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        final Map<String, Object> flattened = flattened();
+        if (flattened != null) return flattened.containsKey(key);
+        for (PropertyScope scope = this; scope != null; scope = scope.parent) {
+            if (scope.own.containsKey(key)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (frozen) throw new IllegalStateException("Properties are frozen");
+        final Object previous = get(key);
+        own.put(key, value);
+        return previous;
+    }
+
+    /* Whole chain, nearest first, for the few who iterate */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        final Map<String, Object> flattened = flattened();
+        if (flattened != null) return flattened.entrySet();
+        return Collections.unmodifiableMap(flatten()).entrySet();
+    }
+
+    /* ====================================================================== */
+
+    private Map<String, Object> flattened() {
+        if (!frozen || (depth <= FLATTEN_DEPTH)) return null;
+        Map<String, Object> flattened = this.flattened;
+        if (flattened == null) this.flattened = flattened = Collections.unmodifiableMap(flatten());
+        return flattened;
+    }
+
+    private Map<String, Object> flatten() {
+        final Map<String, Object> map = parent == null ? new HashMap<String, Object>() : new HashMap<>(parent);
+        map.putAll(own);
+        return map;
+    }
+}
@@ -2,22 +2,54 @@ package com.github.pfumagalli.demavenizer.maven;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import com.github.pfumagalli.demavenizer.Log;
+import com.github.pfumagalli.demavenizer.Workers;
 import com.github.pfumagalli.demavenizer.parser.Node;
 import com.github.pfumagalli.demavenizer.parser.Parser;
 
 public class Repository {
 
     private final URI base;
-    private final Map<Identifier, Project> cache = new HashMap<>();
-    private final Map<Identifier, String> versions = new HashMap<>();
+    private final ExecutorService executor;
+    private final Cache diskCache;
+    private final Map<Identifier, Flight<Project>> cache = new ConcurrentHashMap<>();
+    private final Map<Identifier, Flight<String>> versions = new ConcurrentHashMap<>();
+    private final Map<Identifier, Flight<Map<Identifier, String>>> boms = new ConcurrentHashMap<>();
+
+    /* Kept forever by default, a resident process expires metadata and bounds the rest */
+    private volatile long expiry = 0;
+    private volatile int capacity = 0;
+
+    /* Who is loading what, and who is waiting for what, to catch cycles */
+    private final Map<Future<?>, Thread> owners = new ConcurrentHashMap<>();
+    private final Map<Thread, Future<?>> waiting = new ConcurrentHashMap<>();
 
     public Repository(URI base) {
+        this(base, Workers.executor(), null);
+    }
+
+    public Repository(URI base, Cache diskCache) {
+        this(base, Workers.executor(), diskCache);
+    }
+
+    public Repository(URI base, ExecutorService executor, Cache diskCache) {
         assert (base != null): "Base URI is null";
+        assert (executor != null): "Executor is null";
+        this.executor = executor;
+        this.diskCache = diskCache;
 
         final String path = base.getPath();
         if (path.endsWith("/")) {
@@ -35,60 +67,195 @@ public class Repository {
         }
     }
 
+    /* Metadata and snapshots older than "expiry" millis are loaded again, keeping at most "capacity" of each */
+    public void setLimits(long expiry, int capacity) {
+        if ((expiry < 0) || (capacity < 0)) throw new IllegalArgumentException("Negative limits");
+        this.expiry = expiry;
+        this.capacity = capacity;
+    }
+
+    public Map<Identifier, Project> getProjects(Collection<? extends Identifier> identifiers) {
+
+        /* Fan out, each task walks its own parent chain (callers must not be loading a project themselves) */
+        final List<Future<Project>> futures = new ArrayList<>(identifiers.size());
+        for (final Identifier identifier: identifiers) {
+            futures.add(executor.submit(new Callable<Project>() {
+                @Override
+                public Project call() {
+                    return getProject(identifier);
+                }
+            }));
+        }
+
+        /* Join in the order we were asked */
+        final Map<Identifier, Project> projects = new LinkedHashMap<>();
+        int x = 0;
+        for (final Identifier identifier: identifiers) {
+            projects.put(identifier, Workers.join(futures.get(x ++)));
+        }
+        return projects;
+    }
+
     public Project getProject(Identifier identifier) {
         if (identifier instanceof Project) return (Project) identifier;
-        Project project = cache.get(identifier);
-        if (project != null) return project;
 
         /* Check the version */
-        String version = identifier.getVersion();
-
-        /* Check the cache */
-        if (version == null) version = versions.get(identifier);
-
-        /* Parse metadata */
-        if (version == null) {
-            final String path = identifier.getGroupId().replace('.', '/') +
-                          '/' + identifier.getArtifactId() +
-                          '/' + "maven-metadata.xml";
-            final Node metadata = Parser.parse(base.resolve(path));
-            if (!"metadata".equals(metadata.getName()))
-                throw new IllegalArgumentException("Found <" + metadata.getName() + "/> node");
-            for (final Node versioning: metadata.getChildren("versioning")) {
-                for (final Node release: versioning.getChildren("release")) {
-                    version = release.getText(Collections.emptyMap(), null);
-                    versions.put(identifier, version);
-                }
+        final String version = identifier.getVersion() != null ? identifier.getVersion() : getVersion(identifier.unversioned());
+
+        /* Parse our module, once */
+        final Identifier versioned = Identifier.valueOf(identifier.getGroupId(), identifier.getArtifactId(), version);
+        return once(cache, versioned, isSnapshot(version), new Callable<Project>() {
+            @Override
+            public Project call() {
+                final String path = versioned.getGroupId().replace('.', '/') +
+                              '/' + versioned.getArtifactId() +
+                              '/' + version +
+                              '/' + versioned.getArtifactId() +
+                              '-' + version + ".pom";
+                Log.info("Parsing " + base.resolve(path).toString());
+                return new Project(Repository.this, versioned, parse(path, !isSnapshot(version)));
             }
+        });
+    }
+
+    private String getVersion(final Identifier identifier) {
+        return once(versions, identifier, true, new Callable<String>() {
+            @Override
+            public String call() {
+                final String path = identifier.getGroupId().replace('.', '/') +
+                              '/' + identifier.getArtifactId() +
+                              '/' + "maven-metadata.xml";
+                final Node metadata = parse(path, false);
+                if (!"metadata".equals(metadata.getName()))
+                    throw new IllegalArgumentException("Found <" + metadata.getName() + "/> node");
 
-            /* Still no version? Well, get the last one of it */
-            if (version == null) {
+                String version = null;
                 for (final Node versioning: metadata.getChildren("versioning")) {
-                    for (final Node versions: versioning.getChildren("versions")) {
-                        for (final Node versionNode: versions.getChildren("version")) {
-                            version = versionNode.getText(Collections.emptyMap(), null);
+                    for (final Node release: versioning.getChildren("release")) {
+                        version = release.getText(Collections.emptyMap(), null);
+                    }
+                }
+
+                /* Still no version? Well, get the last one of it */
+                if (version == null) {
+                    for (final Node versioning: metadata.getChildren("versioning")) {
+                        for (final Node versions: versioning.getChildren("versions")) {
+                            for (final Node versionNode: versions.getChildren("version")) {
+                                version = versionNode.getText(Collections.emptyMap(), null);
+                            }
                         }
                     }
                 }
+
+                /* Still nothing? */
+                if (version == null)
+                    throw new IllegalStateException("Unable to get version for " + identifier);
+                return version;
+            }
+        });
+    }
+
+    /* Imported BOMs, flattened once and shared by all projects importing them */
+    public Map<Identifier, String> getManagedVersions(final Identifier identifier) {
+        return once(boms, identifier.canonical(), isSnapshot(identifier.getVersion()), new Callable<Map<Identifier, String>>() {
+            @Override
+            public Map<Identifier, String> call() {
+                final Project project = getProject(identifier);
+                final Map<Identifier, String> managed = project.getManagedVersions();
+                Log.info("Imported " + managed.size() + " managed versions from " + project.asString());
+                return managed;
+            }
+        });
+    }
+
+    /* ====================================================================== */
+
+    /* The first caller loads, whoever asks in the meantime waits for the same result */
+    private <T> T once(Map<Identifier, Flight<T>> futures, Identifier identifier, boolean expires, Callable<T> loader) {
+        Flight<T> future = futures.get(identifier);
+        if ((future != null) && expires && future.isOlderThan(expiry)) {
+            futures.remove(identifier, future);
+            future = null;
+        }
+
+        if (future == null) {
+            final Flight<T> task = new Flight<>(loader);
+            future = futures.putIfAbsent(identifier, task);
+            if (future == null) try {
+                owners.put(task, Thread.currentThread());
+                try {
+                    task.run();
+                } finally {
+                    owners.remove(task);
+                }
+                final T result = Workers.join(task);
+                trim(futures);
+                return result;
+            } catch (final RuntimeException | Error exception) {
+                /* Failures are not remembered, the next caller will try again */
+                futures.remove(identifier, task);
+                throw exception;
             }
         }
 
-        /* Still nothing? */
-        if (version == null)
-            throw new IllegalStateException("Unable to get version for " + identifier);
-
-        /* Parse our module */
-        final String path = identifier.getGroupId().replace('.', '/') +
-                      '/' + identifier.getArtifactId() +
-                      '/' + version +
-                      '/' + identifier.getArtifactId() +
-                      '-' + version + ".pom";
-        identifier = new Identifier(identifier.getGroupId(), identifier.getArtifactId(), version);
-        final URI uri = base.resolve(path);
-        Log.info("Parsing " + uri.toString());
-        project = new Project(this, identifier, Parser.parse(uri));
-        cache.put(identifier, project);
-        return project;
+        /* Waiting for something we (or whoever we wait for) are loading never ends */
+        final Thread current = Thread.currentThread();
+        waiting.put(current, future);
+        try {
+            Future<?> next = future;
+            for (int x = 0; (next != null) && (x <= waiting.size()); x ++) {
+                final Thread owner = owners.get(next);
+                if (owner == null) break;
+                if (owner == current) throw new IllegalStateException("Cyclic reference to " + identifier.asString());
+                next = waiting.get(owner);
+            }
+            return Workers.join(future);
+        } finally {
+            waiting.remove(current);
+        }
+    }
+
+    /* Over capacity? Forget the oldest completed quarter */
+    private <T> void trim(Map<Identifier, Flight<T>> futures) {
+        final int capacity = this.capacity;
+        if ((capacity == 0) || (futures.size() <= capacity)) return;
+
+        final List<Map.Entry<Identifier, Flight<T>>> entries = new ArrayList<>();
+        for (final Map.Entry<Identifier, Flight<T>> entry: futures.entrySet())
+            if (entry.getValue().isDone()) entries.add(entry);
+        Collections.sort(entries, new Comparator<Map.Entry<Identifier, Flight<T>>>() {
+            @Override
+            public int compare(Map.Entry<Identifier, Flight<T>> entry1, Map.Entry<Identifier, Flight<T>> entry2) {
+                return Long.compare(entry1.getValue().created, entry2.getValue().created);
+            }
+        });
+        final int evict = Math.min(entries.size(), futures.size() - ((capacity * 3) / 4));
+        for (int x = 0; x < evict; x ++) futures.remove(entries.get(x).getKey(), entries.get(x).getValue());
+    }
+
+    private static boolean isSnapshot(String version) {
+        return (version != null) && version.endsWith("-SNAPSHOT");
+    }
+
+    private Node parse(String path, boolean immutable) {
+        if (diskCache == null) return Parser.parse(base.resolve(path));
+        return diskCache.parse(base, path, immutable);
+    }
+
+    /* ====================================================================== */
+
+    /* A load, remembering when it started */
+    private static final class Flight<T> extends FutureTask<T> {
+
+        private final long created = System.currentTimeMillis();
+
+        private Flight(Callable<T> loader) {
+            super(loader);
+        }
+
+        private boolean isOlderThan(long expiry) {
+            return (expiry > 0) && isDone() && (System.currentTimeMillis() - created > expiry);
+        }
     }
 
 }
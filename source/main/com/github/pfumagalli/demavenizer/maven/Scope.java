@@ -1,5 +1,5 @@
 package com.github.pfumagalli.demavenizer.maven;
 
 public enum Scope {
-    COMPILE, PROVIDED, RUNTIME, TEST, SYSTEM;
+    COMPILE, PROVIDED, RUNTIME, TEST, SYSTEM, IMPORT;
 }
@@ -0,0 +1,239 @@
+package com.github.pfumagalli.demavenizer.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import com.github.pfumagalli.demavenizer.Log;
+import com.github.pfumagalli.demavenizer.Workers;
+
+public class Checksums {
+
+    public enum Policy { NONE, WARN, FAIL }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Transport transport;
+    private final List<String> algorithms;
+    private final Policy policy;
+
+    public Checksums(Transport transport, String algorithms, Policy policy) {
+        assert (transport != null): "Null transport";
+        assert (policy != null): "Null policy";
+        this.transport = transport;
+        this.policy = policy;
+
+        final List<String> list = new ArrayList<>();
+        final StringTokenizer tokenizer = new StringTokenizer(algorithms == null ? "" : algorithms, ",");
+        while (tokenizer.hasMoreTokens()) {
+            final String algorithm = tokenizer.nextToken().trim().toLowerCase();
+            if (algorithm.isEmpty()) continue;
+            digest(algorithm); // validate early
+            list.add(algorithm);
+        }
+        this.algorithms = Collections.unmodifiableList(list);
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /* Start verifying a download, fetching all sidecar files in the background */
+    public Verification verify(URI uri) {
+        if ((policy == Policy.NONE) || algorithms.isEmpty()) return null;
+        return new Verification(uri);
+    }
+
+    /* ====================================================================== */
+
+    private static MessageDigest digest(String algorithm) {
+        /* Sidecar extensions are the algorithm names without dashes */
+        final String name = "sha1".equals(algorithm) ? "SHA-1" :
+                            "sha256".equals(algorithm) ? "SHA-256" :
+                            "sha384".equals(algorithm) ? "SHA-384" :
+                            "sha512".equals(algorithm) ? "SHA-512" :
+                            algorithm.toUpperCase();
+        try {
+            return MessageDigest.getInstance(name);
+        } catch (final NoSuchAlgorithmException exception) {
+            throw new IllegalArgumentException("Unsupported checksum algorithm \"" + algorithm + "\"", exception);
+        }
+    }
+
+    private String sidecar(URI uri, String algorithm)
+    throws IOException {
+        final Response response = transport.get(URI.create(uri.toASCIIString() + "." + algorithm));
+        try {
+            if (response.getStatus() != Response.OK) return null;
+            final Reader reader = new InputStreamReader(response.getInputStream(), UTF8);
+            final StringBuilder builder = new StringBuilder();
+            final char buffer[] = new char[128];
+            int size;
+            while ((size = reader.read(buffer)) >= 0) builder.append(buffer, 0, size);
+
+            /* Either "hexdigest" or "hexdigest  filename" */
+            final StringTokenizer tokenizer = new StringTokenizer(builder.toString());
+            return tokenizer.hasMoreTokens() ? tokenizer.nextToken().toLowerCase() : null;
+        } finally {
+            response.close();
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b: bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0x0F, 16));
+            builder.append(Character.forDigit(b & 0x0F, 16));
+        }
+        return builder.toString();
+    }
+
+    /* ====================================================================== */
+
+    public class Verification {
+
+        private final URI uri;
+        private final List<MessageDigest> digests = new ArrayList<>();
+        private final List<Future<String>> expected = new ArrayList<>();
+        private final List<String> upstream = new ArrayList<>();
+
+        private Verification(final URI uri) {
+            this.uri = uri;
+            for (final String algorithm: algorithms) {
+                digests.add(digest(algorithm));
+                expected.add(Workers.executor().submit(new Callable<String>() {
+                    @Override
+                    public String call()
+                    throws IOException {
+                        return sidecar(uri, algorithm);
+                    }
+                }));
+            }
+        }
+
+        public void reset() {
+            for (final MessageDigest digest: digests) digest.reset();
+        }
+
+        public void update(ByteBuffer buffer) {
+            for (final MessageDigest digest: digests) digest.update(buffer.duplicate());
+        }
+
+        /* Digest whatever is already on disk, for resumed or segmented downloads */
+        public void update(File file, long length)
+        throws IOException {
+            final InputStream input = new FileInputStream(file);
+            try {
+                final byte buffer[] = new byte[65536];
+                long remaining = length;
+                while (remaining > 0) {
+                    final int size = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (size < 0) throw new IOException("Unexpected end of file reading " + file);
+                    for (final MessageDigest digest: digests) digest.update(buffer, 0, size);
+                    remaining -= size;
+                }
+            } finally {
+                input.close();
+            }
+        }
+
+        /* Wrap a channel so that every byte read through it gets digested */
+        public ReadableByteChannel wrap(final ReadableByteChannel channel) {
+            return new ReadableByteChannel() {
+                @Override public boolean isOpen() { return channel.isOpen(); }
+                @Override public void close() throws IOException { channel.close(); }
+                @Override public int read(ByteBuffer buffer) throws IOException {
+                    final int position = buffer.position();
+                    final int size = channel.read(buffer);
+                    if (size > 0) {
+                        final ByteBuffer read = buffer.duplicate();
+                        read.limit(position + size).position(position);
+                        update(read);
+                    }
+                    return size;
+                }
+            };
+        }
+
+        /* Compare against the sidecars, throwing only when the policy says so */
+        public void verify()
+        throws IOException {
+            upstream.clear();
+            int verified = 0;
+            for (int x = 0; x < algorithms.size(); x ++) {
+                final String algorithm = algorithms.get(x);
+                final String computed = hex(digests.get(x).digest());
+                String expected;
+                try {
+                    expected = Workers.join(this.expected.get(x));
+                } catch (final RuntimeException exception) {
+                    Log.warn("Unable to fetch " + algorithm + " checksum for " + uri + ": " + exception.getMessage());
+                    expected = null;
+                }
+                upstream.add(expected);
+
+                if (expected == null) {
+                    Log.warn("No " + algorithm + " checksum found for " + uri);
+                } else if (expected.equals(computed)) {
+                    verified ++;
+                } else {
+                    final String message = "Checksum " + algorithm + " mismatch for " + uri + ": expected " + expected + " got " + computed;
+                    if (policy == Policy.FAIL) throw new IOException(message);
+                    Log.error(message);
+                }
+            }
+
+            if (verified > 0) {
+                Log.info(" verified " + verified + " checksum(s)");
+            } else if (policy == Policy.FAIL) {
+                throw new IOException("No checksums available to verify " + uri);
+            }
+        }
+
+        /*
+         * Write the upstream checksums next to the downloaded file, never our
+         * own: a mismatching file we were told to keep must not look valid.
+         */
+        public void write(File file)
+        throws IOException {
+            final File directory = file.getAbsoluteFile().getParentFile();
+            for (int x = 0; x < upstream.size(); x ++) {
+                if (upstream.get(x) == null) continue;
+                final File sidecar = new File(directory, file.getName() + "." + algorithms.get(x));
+                final File temporary = File.createTempFile(sidecar.getName(), ".tmp", directory);
+                try {
+                    final Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), UTF8);
+                    try {
+                        writer.write(upstream.get(x));
+                        writer.write('\n');
+                    } finally {
+                        writer.close();
+                    }
+                    Files.move(temporary.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    temporary.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.github.pfumagalli.demavenizer.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import com.github.pfumagalli.demavenizer.Log;
+import com.github.pfumagalli.demavenizer.Workers;
+import com.github.pfumagalli.demavenizer.net.Checksums.Verification;
+
+public class Downloader {
+
+    private static final long CHUNK = 1024 * 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Transport transport;
+    private final int segments;
+    private final long threshold;
+
+    public Downloader(Transport transport) {
+        this(transport, 1, Long.MAX_VALUE);
+    }
+
+    public Downloader(Transport transport, int segments, long threshold) {
+        assert (transport != null): "Null transport";
+        if (segments < 1) throw new IllegalArgumentException("Invalid number of segments " + segments);
+        this.transport = transport;
+        this.segments = segments;
+        this.threshold = threshold;
+    }
+
+    public long download(URI uri, File file)
+    throws IOException {
+        return download(uri, file, null);
+    }
+
+    /* Download into "file" via a ".part" file, verified and renamed once complete */
+    public long download(URI uri, File file, Verification verification)
+    throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+            throw new IOException("Unable to create directory " + parent);
+
+        final File part = new File(parent, file.getName() + ".part");
+        final File validator = new File(parent, file.getName() + ".part.validator");
+
+        /* Big new downloads can be split, anything else streams (and resumes) */
+        final long total;
+        final long length = part.isFile() || segments < 2 ? -1 : probe(uri);
+        if (length >= threshold) {
+            total = segmented(uri, part, length);
+            /* Segments arrive out of order, so digest them in one pass at the end */
+            if (verification != null) verification.update(part, total);
+        } else {
+            total = sequential(uri, part, validator, verification);
+        }
+
+        /* Never let a corrupted file reach its final name */
+        if (verification != null) try {
+            verification.verify();
+        } catch (final IOException exception) {
+            part.delete();
+            throw exception;
+        }
+
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        validator.delete();
+        if (verification != null) verification.write(file);
+        return total;
+    }
+
+    /* ====================================================================== */
+
+    /* Returns the length of a range-capable resource, or -1 */
+    private long probe(URI uri)
+    throws IOException {
+        final Response response = transport.head(uri);
+        try {
+            if (response.getStatus() != Response.OK) return -1;
+            if (!"bytes".equalsIgnoreCase(response.getHeader("Accept-Ranges"))) return -1;
+            return response.getContentLength();
+        } finally {
+            response.close();
+        }
+    }
+
+    /*
+     * Partial files are resumed only "If-Range" the resource still matches the
+     * ETag (or Last-Modified) it was first fetched with, otherwise the server
+     * sends everything again. Without a validator we don't resume at all.
+     */
+    private long sequential(URI uri, File part, File validator, Verification verification)
+    throws IOException {
+        final String expect = part.isFile() && validator.isFile() ? new String(Files.readAllBytes(validator.toPath()), UTF8).trim() : "";
+        final long existing = expect.isEmpty() ? 0 : part.length();
+        final Map<String, String> headers = new HashMap<>();
+        if (existing > 0) {
+            headers.put("Range", "bytes=" + existing + "-");
+            headers.put("If-Range", expect);
+        }
+        final Response response = transport.request("GET", uri, headers);
+        try {
+
+            /* Either we resume where we were, or we start from scratch */
+            final long position;
+            if ((existing > 0) && (response.getStatus() == Response.PARTIAL_CONTENT) && (rangeStart(response) == existing)) {
+                Log.info(" resuming at " + existing + " bytes");
+                position = existing;
+            } else if ((existing > 0) && (response.getStatus() == 416)) {
+                /* Range not satisfiable, our partial file is garbage */
+                response.close();
+                if (!part.delete()) throw new IOException("Unable to delete " + part);
+                return sequential(uri, part, validator, verification);
+            } else {
+                response.ensure(Response.OK);
+                position = 0;
+
+                /* Remember what we're fetching, weak ETags can't be used for ranges */
+                String etag = response.getHeader("ETag");
+                if ((etag != null) && etag.startsWith("W/")) etag = null;
+                final String current = etag != null ? etag : response.getHeader("Last-Modified");
+                if (current == null) validator.delete();
+                else Files.write(validator.toPath(), current.getBytes(UTF8));
+            }
+
+            /* Whatever we already have needs to be digested before the rest */
+            if (verification != null) {
+                verification.reset();
+                if (position > 0) verification.update(part, position);
+            }
+
+            final long expected = response.getContentLength();
+            final RandomAccessFile output = new RandomAccessFile(part, "rw");
+            try {
+                output.setLength(position);
+                final long written = transfer(response, output.getChannel(), position, Long.MAX_VALUE, verification);
+                if ((expected >= 0) && (written != expected))
+                    throw new IOException("Expected " + expected + " bytes from " + uri + " but got " + written);
+                output.getChannel().force(false);
+                return position + written;
+            } finally {
+                output.close();
+            }
+
+        } finally {
+            response.close();
+        }
+    }
+
+    private long segmented(final URI uri, final File part, final long length)
+    throws IOException {
+        final long size = (length + segments - 1) / segments;
+        Log.info(" fetching " + length + " bytes in " + ((length + size - 1) / size) + " segments");
+
+        final RandomAccessFile output = new RandomAccessFile(part, "rw");
+        final List<Future<Long>> futures = new ArrayList<>();
+        boolean complete = false;
+        try {
+            output.setLength(length);
+            final FileChannel channel = output.getChannel();
+
+            final CompletionService<Long> completion = new ExecutorCompletionService<>(Workers.executor());
+            for (long start = 0; start < length; start += size) {
+                final long first = start;
+                final long last = Math.min(start + size, length) - 1;
+                futures.add(completion.submit(new Callable<Long>() {
+                    @Override
+                    public Long call()
+                    throws IOException {
+                        final Response response = transport.request("GET", uri, Collections.singletonMap("Range", "bytes=" + first + "-" + last));
+                        try {
+                            response.ensure(Response.PARTIAL_CONTENT);
+                            if (rangeStart(response) != first) throw new IOException("Wrong range returned by " + uri);
+                            final long written = transfer(response, channel, first, last - first + 1, null);
+                            if (written != last - first + 1) throw new IOException("Short segment read from " + uri);
+                            return written;
+                        } finally {
+                            response.close();
+                        }
+                    }
+                }));
+            }
+
+            /* Join as segments finish, so the first failure stops everything */
+            long total = 0;
+            for (int x = 0; x < futures.size(); x ++) try {
+                total += Workers.join(completion.take());
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for segments", exception);
+            }
+            channel.force(false);
+            complete = true;
+            return total;
+
+        } finally {
+            /* Stop whatever is still running before the file goes away */
+            if (!complete) for (final Future<Long> future: futures) future.cancel(true);
+            output.close();
+            /* Segments leave holes, so a failed download can't be resumed */
+            if (!complete) part.delete();
+        }
+    }
+
+    private static long transfer(Response response, FileChannel channel, long position, long count, Verification verification)
+    throws IOException {
+        final ReadableByteChannel stream = Channels.newChannel(response.getInputStream());
+        final ReadableByteChannel input = verification == null ? stream : verification.wrap(stream);
+        long total = 0;
+        while (total < count) {
+            final long transferred = channel.transferFrom(input, position + total, Math.min(CHUNK, count - total));
+            if (transferred <= 0) break;
+            total += transferred;
+        }
+        return total;
+    }
+
+    private static long rangeStart(Response response) {
+        /* Content-Range: bytes 100-199/200 */
+        final String range = response.getHeader("Content-Range");
+        if (range == null) return -1;
+        final int space = range.indexOf(' ');
+        final int dash = range.indexOf('-', space + 1);
+        if ((space < 0) || (dash < 0)) return -1;
+        try {
+            return Long.parseLong(range.substring(space + 1, dash).trim());
+        } catch (final NumberFormatException exception) {
+            return -1;
+        }
+    }
+}
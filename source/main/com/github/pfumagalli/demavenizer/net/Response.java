@@ -0,0 +1,58 @@
+package com.github.pfumagalli.demavenizer.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+public abstract class Response implements Closeable {
+
+    public static final int OK = 200;
+    public static final int PARTIAL_CONTENT = 206;
+    public static final int NOT_MODIFIED = 304;
+    public static final int NOT_FOUND = 404;
+
+    private final URI uri;
+    private final int status;
+    private final String message;
+
+    protected Response(URI uri, int status, String message) {
+        assert (uri != null): "Null URI";
+        this.uri = uri;
+        this.status = status;
+        this.message = message;
+    }
+
+    /* The URI the response came from, after redirects */
+    public URI getURI() {
+        return uri;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public abstract String getHeader(String name);
+
+    public abstract long getLastModified();
+
+    public abstract long getContentLength();
+
+    public abstract InputStream getInputStream()
+    throws IOException;
+
+    public Response ensure(int... expected)
+    throws IOException {
+        for (final int status: expected) if (this.status == status) return this;
+        close();
+        throw new IOException("Server returned " + status + (message == null ? "" : " " + message) + " for " + uri);
+    }
+
+    @Override
+    public abstract void close();
+
+}
@@ -0,0 +1,41 @@
+package com.github.pfumagalli.demavenizer.net;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+
+public abstract class Transport {
+
+    private static volatile Transport instance = new URLConnectionTransport();
+
+    public static Transport getDefault() {
+        return instance;
+    }
+
+    public static void setDefault(Transport transport) {
+        if (transport == null) throw new NullPointerException("Null transport");
+        instance = transport;
+    }
+
+    /* ====================================================================== */
+
+    protected Transport() {
+        super();
+    }
+
+    public final Response get(URI uri)
+    throws IOException {
+        return request("GET", uri, Collections.<String, String>emptyMap());
+    }
+
+    public final Response head(URI uri)
+    throws IOException {
+        return request("HEAD", uri, Collections.<String, String>emptyMap());
+    }
+
+    /* The returned response must be closed, as it might hold a connection */
+    public abstract Response request(String method, URI uri, Map<String, String> headers)
+    throws IOException;
+
+}
@@ -0,0 +1,189 @@
+package com.github.pfumagalli.demavenizer.net;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import com.github.pfumagalli.demavenizer.Log;
+
+public class URLConnectionTransport extends Transport {
+
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int connectionsPerHost;
+
+    public URLConnectionTransport() {
+        this(10000, 30000, 8);
+    }
+
+    /* The JDK's own keep-alive pool is sized by "http.maxConnections", set by whoever owns the process */
+    public URLConnectionTransport(int connectTimeout, int readTimeout, int connectionsPerHost) {
+        if (connectTimeout < 0) throw new IllegalArgumentException("Negative connect timeout " + connectTimeout);
+        if (readTimeout < 0) throw new IllegalArgumentException("Negative read timeout " + readTimeout);
+        if (connectionsPerHost < 1) throw new IllegalArgumentException("Invalid connections per host " + connectionsPerHost);
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.connectionsPerHost = connectionsPerHost;
+    }
+
+    @Override
+    public Response request(String method, URI uri, Map<String, String> headers)
+    throws IOException {
+        final URLConnection connection = uri.toURL().openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setUseCaches(false);
+        for (final Entry<String, String> header: headers.entrySet())
+            connection.setRequestProperty(header.getKey(), header.getValue());
+
+        /* Non-HTTP (files, jars, ...) have no status, no limits */
+        if (!(connection instanceof HttpURLConnection)) {
+            try {
+                connection.connect();
+                return new ConnectionResponse(uri, connection, Response.OK, "OK", null);
+            } catch (final FileNotFoundException exception) {
+                return new ConnectionResponse(uri, connection, Response.NOT_FOUND, exception.getMessage(), null);
+            }
+        }
+
+        /* Limit how many connections we keep open against a single host */
+        final String host = uri.getHost() + ":" + uri.getPort();
+        Semaphore semaphore = hosts.get(host);
+        if (semaphore == null) {
+            final Semaphore created = new Semaphore(connectionsPerHost);
+            semaphore = hosts.putIfAbsent(host, created);
+            if (semaphore == null) semaphore = created;
+        }
+
+        try {
+            semaphore.acquire();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a connection to " + host, exception);
+        }
+
+        try {
+            final HttpURLConnection http = (HttpURLConnection) connection;
+            http.setRequestMethod(method);
+            http.setInstanceFollowRedirects(true);
+            final int status = http.getResponseCode();
+
+            /* Redirects keep the same protocol, so we always have a URI */
+            URI location;
+            try {
+                location = http.getURL().toURI();
+            } catch (final URISyntaxException exception) {
+                location = uri;
+            }
+            return new ConnectionResponse(location, http, status, http.getResponseMessage(), semaphore);
+
+        } catch (final IOException | RuntimeException exception) {
+            semaphore.release();
+            throw exception;
+        }
+    }
+
+    /* ====================================================================== */
+
+    private static class ConnectionResponse extends Response {
+
+        private final URLConnection connection;
+        private final Semaphore semaphore;
+        private InputStream input;
+        private boolean closed;
+        private boolean released;
+
+        private ConnectionResponse(URI uri, URLConnection connection, int status, String message, Semaphore semaphore) {
+            super(uri, status, message);
+            this.connection = connection;
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public long getLastModified() {
+            return connection.getLastModified();
+        }
+
+        @Override
+        public long getContentLength() {
+            return connection.getContentLengthLong();
+        }
+
+        @Override
+        public synchronized InputStream getInputStream()
+        throws IOException {
+            if (closed) throw new IOException("Response for " + getURI() + " already closed");
+            if (input != null) return input;
+
+            final InputStream stream;
+            if (getStatus() < 400) {
+                stream = connection.getInputStream();
+            } else if (connection instanceof HttpURLConnection) {
+                stream = ((HttpURLConnection) connection).getErrorStream();
+            } else {
+                stream = null;
+            }
+
+            if (stream == null) throw new FileNotFoundException(getURI().toASCIIString());
+            return input = semaphore == null ? stream : new FilterInputStream(stream) {
+
+                /* The whole body was read, the connection is back in the JDK's pool */
+                @Override
+                public int read()
+                throws IOException {
+                    final int read = super.read();
+                    if (read < 0) release();
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length)
+                throws IOException {
+                    final int read = super.read(buffer, offset, length);
+                    if (read < 0) release();
+                    return read;
+                }
+            };
+        }
+
+        /* Whichever comes first, end of body or close, hands the permit back */
+        private synchronized void release() {
+            if (released || (semaphore == null)) return;
+            released = true;
+            semaphore.release();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            try {
+                /* Closing the stream lets the JDK hand the connection back to its pool */
+                if (input == null) input = getStatus() < 400 ? connection.getInputStream() :
+                                           connection instanceof HttpURLConnection ?
+                                               ((HttpURLConnection) connection).getErrorStream() :
+                                               null;
+                if (input != null) input.close();
+            } catch (final IOException exception) {
+                Log.warn("Exception closing connection to " + getURI() + ": " + exception.getMessage());
+            } finally {
+                release();
+            }
+        }
+    }
+}
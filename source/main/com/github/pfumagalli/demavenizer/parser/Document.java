@@ -0,0 +1,277 @@
+package com.github.pfumagalli.demavenizer.parser;
+
+import java.net.URI;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.pfumagalli.demavenizer.Strings;
+
+/*
+ * A whole parsed document in a handful of flat arrays: elements are numbered
+ * in document order, children of each element sit in a contiguous range
+ * (once in document order, once grouped by name) and all text shares a
+ * single character buffer. Nodes are just views on an element number.
+ */
+final class Document {
+
+    private final URI uri;
+    private final Date lastModified;
+
+    private final String names[];
+    private final Map<String, Integer> nameIds;
+    private final int elementNames[];
+    private final int childStart[];
+    private final int children[];
+    private final int childrenByName[];
+    private final int attributeStart[];
+    private final String attributeNames[];
+    private final String attributeValues[];
+    private final char text[];
+    private final int textStart[];
+    private final int textLength[];
+    private final String texts[];
+    private final Expression expressions[];
+
+    private Document(Builder builder) {
+        uri = builder.uri;
+        lastModified = builder.lastModified;
+
+        final int count = builder.count;
+        names = new String[builder.names.size()];
+        for (final Map.Entry<String, Integer> entry: builder.names.entrySet()) names[entry.getValue()] = entry.getKey();
+        nameIds = builder.names;
+        elementNames = Arrays.copyOf(builder.elementNames, count);
+        attributeStart = Arrays.copyOf(builder.attributeStart, count + 1);
+        attributeStart[count] = builder.attributeCount;
+        attributeNames = Arrays.copyOf(builder.attributeNames, builder.attributeCount);
+        attributeValues = Arrays.copyOf(builder.attributeValues, builder.attributeCount);
+        text = Arrays.copyOf(builder.text, builder.textCount);
+        textStart = Arrays.copyOf(builder.textStart, count);
+        textLength = Arrays.copyOf(builder.textLength, count);
+        texts = new String[count];
+        expressions = new Expression[count];
+
+        /* Children ranges, elements are numbered in document order */
+        childStart = new int[count + 1];
+        for (int x = 1; x < count; x ++) childStart[builder.parents[x] + 1] ++;
+        for (int x = 0; x < count; x ++) childStart[x + 1] += childStart[x];
+        children = new int[Math.max(count - 1, 0)];
+        final int filled[] = new int[count];
+        for (int x = 1; x < count; x ++) {
+            final int parent = builder.parents[x];
+            children[childStart[parent] + filled[parent] ++] = x;
+        }
+
+        /* Same ranges, grouped by name id, still in document order within a name */
+        childrenByName = new int[children.length];
+        final long keys[] = new long[children.length];
+        for (int x = 0; x < children.length; x ++) keys[x] = ((long) elementNames[children[x]] << 32) | children[x];
+        for (int x = 0; x < count; x ++) Arrays.sort(keys, childStart[x], childStart[x + 1]);
+        for (int x = 0; x < keys.length; x ++) childrenByName[x] = (int) keys[x];
+    }
+
+    /* ====================================================================== */
+
+    URI getURI() {
+        return uri;
+    }
+
+    Date getLastModified() {
+        return lastModified;
+    }
+
+    Node getRoot() {
+        return elementNames.length == 0 ? null : new Node(this, 0);
+    }
+
+    String getName(int element) {
+        return names[elementNames[element]];
+    }
+
+    String getAttribute(int element, String name) {
+        for (int x = attributeStart[element]; x < attributeStart[element + 1]; x ++) {
+            if (attributeNames[x].equals(name)) return attributeValues[x];
+        }
+        return null;
+    }
+
+    int getAttributeCount(int element) {
+        return attributeStart[element + 1] - attributeStart[element];
+    }
+
+    String getAttributeName(int element, int index) {
+        return attributeNames[attributeStart[element] + index];
+    }
+
+    String getAttributeValue(int element, int index) {
+        return attributeValues[attributeStart[element] + index];
+    }
+
+    /* Trimmed text, only turned into a string when someone asks for it */
+    String getText(int element) {
+        String string = texts[element];
+        if (string == null) texts[element] = string = new String(text, textStart[element], textLength[element]);
+        return string;
+    }
+
+    /* The text as an expression, parsed once per element */
+    Expression getExpression(int element) {
+        Expression expression = expressions[element];
+        if (expression == null) expressions[element] = expression = Expression.parse(getText(element), uri);
+        return expression;
+    }
+
+    List<Node> getChildren(int element) {
+        return new Children(children, childStart[element], childStart[element + 1]);
+    }
+
+    List<Node> getChildren(int element, String name) {
+        final Integer id = nameIds.get(name);
+        if (id == null) return new Children(childrenByName, 0, 0);
+        final int from = lowerBound(element, id);
+        final int to = lowerBound(element, id + 1);
+        return new Children(childrenByName, from, to);
+    }
+
+    /* The first child with a name, in document order, or -1 */
+    int getChild(int element, String name) {
+        final Integer id = nameIds.get(name);
+        if (id == null) return -1;
+        final int index = lowerBound(element, id);
+        if ((index < childStart[element + 1]) && (elementNames[childrenByName[index]] == id)) return childrenByName[index];
+        return -1;
+    }
+
+    private int lowerBound(int element, int id) {
+        int low = childStart[element];
+        int high = childStart[element + 1];
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (elementNames[childrenByName[middle]] < id) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /* ====================================================================== */
+
+    private final class Children extends AbstractList<Node> {
+
+        private final int elements[];
+        private final int from;
+        private final int to;
+
+        private Children(int elements[], int from, int to) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Node get(int index) {
+            if ((index < 0) || (index >= to - from)) throw new IndexOutOfBoundsException(Integer.toString(index));
+            return new Node(Document.this, elements[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /* Collects SAX events, one element at a time, in document order */
+    static final class Builder {
+
+        private final URI uri;
+        private final Date lastModified;
+        private final Map<String, Integer> names = new HashMap<>();
+
+        private int count = 0;
+        private int elementNames[] = new int[64];
+        private int parents[] = new int[64];
+        private int attributeStart[] = new int[65];
+        private int textStart[] = new int[64];
+        private int textLength[] = new int[64];
+
+        private int attributeCount = 0;
+        private String attributeNames[] = new String[64];
+        private String attributeValues[] = new String[64];
+
+        private int textCount = 0;
+        private char text[] = new char[1024];
+
+        /* Open elements, each with its own text buffer reused across siblings */
+        private int depth = 0;
+        private int open[] = new int[16];
+        private StringBuilder buffers[] = new StringBuilder[16];
+
+        Builder(URI uri, Date lastModified) {
+            this.uri = uri;
+            this.lastModified = lastModified;
+        }
+
+        void start(String name) {
+            if (count == elementNames.length) {
+                final int length = count * 2;
+                elementNames = Arrays.copyOf(elementNames, length);
+                parents = Arrays.copyOf(parents, length);
+                attributeStart = Arrays.copyOf(attributeStart, length + 1);
+                textStart = Arrays.copyOf(textStart, length);
+                textLength = Arrays.copyOf(textLength, length);
+            }
+
+            Integer id = names.get(name);
+            if (id == null) names.put(Strings.intern(name), id = names.size());
+            elementNames[count] = id;
+            parents[count] = depth == 0 ? -1 : open[depth - 1];
+            attributeStart[count] = attributeCount;
+
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+                buffers = Arrays.copyOf(buffers, depth * 2);
+            }
+            if (buffers[depth] == null) buffers[depth] = new StringBuilder();
+            buffers[depth].setLength(0);
+            open[depth ++] = count ++;
+        }
+
+        void attribute(String name, String value) {
+            if (attributeCount == attributeNames.length) {
+                attributeNames = Arrays.copyOf(attributeNames, attributeCount * 2);
+                attributeValues = Arrays.copyOf(attributeValues, attributeCount * 2);
+            }
+            attributeNames[attributeCount] = Strings.intern(name);
+            attributeValues[attributeCount ++] = value;
+        }
+
+        void characters(char[] characters, int start, int length) {
+            buffers[depth - 1].append(characters, start, length);
+        }
+
+        void end() {
+            final int element = open[-- depth];
+            final StringBuilder buffer = buffers[depth];
+
+            /* Trim, as text is always read trimmed */
+            int start = 0;
+            int end = buffer.length();
+            while ((start < end) && (buffer.charAt(start) <= ' ')) start ++;
+            while ((end > start) && (buffer.charAt(end - 1) <= ' ')) end --;
+
+            if (textCount + end - start > text.length) text = Arrays.copyOf(text, Math.max(text.length * 2, textCount + end - start));
+            buffer.getChars(start, end, text, textCount);
+            textStart[element] = textCount;
+            textLength[element] = end - start;
+            textCount += end - start;
+        }
+
+        Document build() {
+            if (depth != 0) throw new IllegalStateException("Unbalanced document " + uri);
+            return new Document(this);
+        }
+    }
+}
@@ -1,23 +1,52 @@
 package com.github.pfumagalli.demavenizer.parser;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.github.pfumagalli.demavenizer.Log;
 
 public abstract class Expression {
 
+    /* Expressions are immutable, so the same text parses once and gets shared */
+    private static final int CACHE_SIZE = 4096;
+    private static final Map<Key, Expression> cache = new LinkedHashMap<Key, Expression>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Expression> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
     private Expression() {
         super();
     }
 
     public static Expression parse(String expression, URI uri) {
+        final Key key = new Key(expression, uri);
+        synchronized (cache) {
+            final Expression cached = cache.get(key);
+            if (cached != null) return cached;
+        }
+
+        /* Parse outside of the lock, worst case two threads parse the same text */
+        final Expression parsed = parseUncached(expression, uri);
+        synchronized (cache) {
+            cache.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    private static Expression parseUncached(String expression, URI uri) {
         final List<Expression> expressions = new ArrayList<>();
 
         int position = 0;
@@ -56,6 +85,35 @@ public abstract class Expression {
 
     /* ====================================================================== */
 
+    private static final class Key {
+
+        private final String expression;
+        private final URI uri;
+        private final int hashCode;
+
+        private Key(String expression, URI uri) {
+            this.expression = expression;
+            this.uri = uri;
+            hashCode = (31 * expression.hashCode()) + (uri == null ? 0 : uri.hashCode());
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) return true;
+            if (!(object instanceof Key)) return false;
+            final Key key = (Key) object;
+            return expression.equals(key.expression) &&
+                   (uri == null ? key.uri == null : uri.equals(key.uri));
+        }
+    }
+
+    /* ====================================================================== */
+
     private static class EmptyExpression extends Expression {
 
         private EmptyExpression() {
@@ -165,25 +223,85 @@ public abstract class Expression {
             /* Try getting the value out of a Map */
             if (context instanceof Map) return ((Map<?, ?>) context).get(token);
 
-            /* Try calling a method */
+            /* Getter or field, resolved once per class and token */
+            final Map<String, Accessor> accessors = ACCESSORS.get(context.getClass());
+            Accessor accessor = accessors.get(token);
+            if (accessor == null) {
+                accessor = Accessor.resolve(context.getClass(), token);
+                accessors.put(token, accessor);
+            }
+            return accessor.get(context);
+        }
+    }
+
+    /* ====================================================================== */
+
+    private static final ClassValue<Map<String, Accessor>> ACCESSORS = new ClassValue<Map<String, Accessor>>() {
+        @Override
+        protected Map<String, Accessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final class Accessor {
+
+        private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+        private static final MethodType TYPE = MethodType.methodType(Object.class, Object.class);
+
+        /* Nothing to call, but remembered so we never look again */
+        private static final Accessor NONE = new Accessor(null, null);
+
+        private final MethodHandle getter;
+        private final MethodHandle field;
+
+        private Accessor(MethodHandle getter, MethodHandle field) {
+            this.getter = getter;
+            this.field = field;
+        }
+
+        private static Accessor resolve(Class<?> type, String token) {
             final String methodName = "get" +
                                       token.substring(0, 1).toUpperCase() +
                                       token.substring(1);
+
+            MethodHandle getter = null;
             try {
-                final Method method = context.getClass().getMethod(methodName);
-                return method.invoke(context);
+                final Method method = type.getMethod(methodName);
+                getter = adapt(LOOKUP.unreflect(method), method.getModifiers());
             } catch (final NoSuchMethodException
-                         | IllegalAccessException
-                         | InvocationTargetException exception) {
-                /* Swallow method exceptions */
+                         | IllegalAccessException exception) {
+                /* No accessible getter */
             }
 
-            /* Try accessing a field */
+            MethodHandle field = null;
             try {
-                final Field field = context.getClass().getField(token);
-                return field.get(context);
-            } catch(final NoSuchFieldException
-                        | IllegalAccessException error) {
+                final Field reflected = type.getField(token);
+                field = adapt(LOOKUP.unreflectGetter(reflected), reflected.getModifiers());
+            } catch (final NoSuchFieldException
+                         | IllegalAccessException exception) {
+                /* No accessible field */
+            }
+
+            return (getter == null) && (field == null) ? NONE : new Accessor(getter, field);
+        }
+
+        /* Everything becomes (Object)Object, statics just ignore their target */
+        private static MethodHandle adapt(MethodHandle handle, int modifiers) {
+            if (Modifier.isStatic(modifiers)) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            return handle.asType(TYPE);
+        }
+
+        private Object get(Object context) {
+            /* Like reflection, a throwing getter falls back to the field */
+            if (getter != null) try {
+                return (Object) getter.invokeExact(context);
+            } catch (final Throwable throwable) {
+                /* Swallow method exceptions */
+            }
+
+            if (field != null) try {
+                return (Object) field.invokeExact(context);
+            } catch (final Throwable throwable) {
                 /* Swallow field exceptions */
             }
 
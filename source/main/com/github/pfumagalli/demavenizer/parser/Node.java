@@ -1,91 +1,61 @@
 package com.github.pfumagalli.demavenizer.parser;
 
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 
 public class Node {
 
-    private final StringBuilder characters = new StringBuilder();
-    private final Map<String, String> attributes = new HashMap<>();
-    private final List<Node> children = new ArrayList<>();
-    private final Date lastModified;
-    private final String name;
-    private final URI uri;
-
-    public Node(String name, URI uri, Date lastModified) {
-        this.name = name;
-        this.uri = uri;
-        this.lastModified = lastModified;
-    }
-
-    /* ====================================================================== */
-
-    void addCharacters(char[] ch, int start, int length) {
-        characters.append(ch, start, length);
-    }
+    private final Document document;
+    private final int element;
 
-    void addChild(Node node) {
-        children.add(node);
-    }
-
-    void addAttribute(String name, String value) {
-        attributes.put(name, value);
+    Node(Document document, int element) {
+        this.document = document;
+        this.element = element;
     }
 
     /* ====================================================================== */
 
     public URI getURI() {
-        return uri;
+        return document.getURI();
     }
 
     public String getName() {
-        return name;
+        return document.getName(element);
     }
 
     public Date getLastModified() {
-        return lastModified;
+        return document.getLastModified();
     }
 
     public String getAttribute(String name) {
-        return attributes.get(name);
+        return document.getAttribute(element, name);
     }
 
     public List<Node> getChildren() {
-        return children;
+        return document.getChildren(element);
     }
 
     public List<Node> getChildren(String name) {
-        final List<Node> children = new ArrayList<>();
-        for (final Node child: this.children) {
-            if (name.equals(child.name)) children.add(child);
-        }
-        return children;
+        return document.getChildren(element, name);
     }
 
     public String getText(Map<?, ?> context, String defaultValue) {
-        final String text = characters.toString().trim();
+        final String text = document.getText(element);
         if (text.isEmpty()) return defaultValue;
         try {
-            return Expression.parse(text, uri).evaluate(context);
+            return document.getExpression(element).evaluate(context);
         } catch (final Exception exception) {
-            throw new IllegalStateException("Evaluation exception in " + uri, exception);
+            throw new IllegalStateException("Evaluation exception in " + getURI(), exception);
         }
     }
 
     public String getChildText(String name, Map<?, ?> context, String defaultValue) {
-
-        for (final Node child: children) {
-            if (name.equals(child.name)) {
-                return child.getText(context, defaultValue);
-            }
-        }
-        return defaultValue;
+        final int child = document.getChild(element, name);
+        if (child < 0) return defaultValue;
+        return new Node(document, child).getText(context, defaultValue);
     }
 
     /* ====================================================================== */
@@ -98,21 +68,19 @@ public class Node {
     private String toString(int indent) {
         final StringBuilder builder = new StringBuilder();
         for (int x = 0; x < indent; x ++) builder.append(' ');
-        builder.append(name);
+        builder.append(getName());
         builder.append('[');
-        boolean first = true;
-        for (final Entry<String, String> entry: attributes.entrySet()) {
-            if (!first) builder.append(',');
-            builder.append(entry.getKey());
+        for (int x = 0; x < document.getAttributeCount(element); x ++) {
+            if (x > 0) builder.append(',');
+            builder.append(document.getAttributeName(element, x));
             builder.append('=');
-            builder.append(entry.getValue());
-            first = false;
+            builder.append(document.getAttributeValue(element, x));
         }
         builder.append(']');
         builder.append('{');
-        builder.append(characters.toString().trim());
+        builder.append(document.getText(element));
         builder.append('}');
-        for (final Node child: children) {
+        for (final Node child: getChildren()) {
             builder.append('\n');
             builder.append(child.toString(indent + 1));
         }
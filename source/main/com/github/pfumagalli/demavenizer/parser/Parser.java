@@ -2,86 +2,132 @@ package com.github.pfumagalli.demavenizer.parser;
 
 import java.io.InputStream;
 import java.net.URI;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.Date;
-import java.util.Stack;
 
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.github.pfumagalli.demavenizer.net.Response;
+import com.github.pfumagalli.demavenizer.net.Transport;
+
 public class Parser extends DefaultHandler {
 
     public static Node parse(URI uri)
     throws ParseException {
-        final SAXParserFactory factory = SAXParserFactory.newInstance();
-        factory.setNamespaceAware(true);
-        factory.setValidating(false);
         try {
-            final URL url = uri.toURL();
-            final URLConnection connection = url.openConnection();
-            final Date lastModified = new Date(connection.getLastModified());
+            final Response response = Transport.getDefault().get(uri).ensure(Response.OK);
+            try {
+                final Date lastModified = new Date(response.getLastModified());
+                return parse(response.getInputStream(), uri, lastModified);
+            } finally {
+                response.close();
+            }
 
-            final NodeHandler handler = new NodeHandler(lastModified, uri);
+        } catch (final ParseException exception) {
+            throw exception;
+        } catch (final Exception exception) {
+            throw new ParseException(uri, exception);
+        }
 
-            final InputStream input = connection.getInputStream();
-            factory.newSAXParser().parse(input, handler);
-            input.close();
+    }
 
-            return handler.rootNode;
+    public static Node parse(InputStream input, URI uri, Date lastModified)
+    throws ParseException {
+        final SAXParser parser = parsers.get();
+        try {
+            final NodeHandler handler = new NodeHandler(lastModified, uri);
+            parser.parse(input, handler);
+            return handler.builder.build().getRoot();
 
         } catch (final Exception exception) {
             throw new ParseException(uri, exception);
+        } finally {
+            parser.reset();
         }
+    }
 
+    /* A streaming reader, for those who only need a few bits of a document */
+    public static XMLStreamReader stream(InputStream input)
+    throws XMLStreamException {
+        return streams.get().createXMLStreamReader(input);
     }
 
-    private static class NodeHandler extends DefaultHandler {
+    /* ====================================================================== */
+
+    /* Set up once, never fetching DTDs or external entities */
+    private static final SAXParserFactory factory = SAXParserFactory.newInstance();
+    static {
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        } catch (final ParserConfigurationException | SAXException exception) {
+            throw new IllegalStateException("Unable to configure XML parsers", exception);
+        }
+    }
+
+    /* Parsers are not thread safe, but can be reused one document after another */
+    private static final ThreadLocal<SAXParser> parsers = new ThreadLocal<SAXParser>() {
+        @Override
+        protected SAXParser initialValue() {
+            try {
+                return factory.newSAXParser();
+            } catch (final ParserConfigurationException | SAXException exception) {
+                throw new IllegalStateException("Unable to create XML parser", exception);
+            }
+        }
+    };
 
-        private final Stack<Node> nodes = new Stack<>();
-        private final Date lastModified;
-        private final URI uri;
+    private static final ThreadLocal<XMLInputFactory> streams = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            return factory;
+        }
+    };
+
+    private static class NodeHandler extends DefaultHandler {
 
-        private Node rootNode = null;
+        private final Document.Builder builder;
 
         private NodeHandler(Date lastModified, URI uri) {
-            this.lastModified = lastModified;
-            this.uri = uri;
+            builder = new Document.Builder(uri, lastModified);
         }
 
         @Override
         public void startElement(String uri, String localName, String qName, Attributes atts)
         throws SAXException {
-            final Node node = new Node(localName, this.uri, lastModified);
-
+            builder.start(localName);
             for (int x = 0; x < atts.getLength(); x ++) {
-                final String aName = atts.getLocalName(x);
-                final String aValue = atts.getValue(x);
-                node.addAttribute(aName, aValue);
-            }
-
-            if (nodes.isEmpty()) {
-                rootNode = node;
-            } else {
-                nodes.peek().addChild(node);
+                builder.attribute(atts.getLocalName(x), atts.getValue(x));
             }
-            nodes.push(node);
-
         }
 
         @Override
         public void endElement(String uri, String localName, String qName)
         throws SAXException {
-            nodes.pop();
+            builder.end();
         }
 
         @Override
         public void characters(char[] ch, int start, int length)
         throws SAXException {
-            nodes.peek().addCharacters(ch, start, length);
+            builder.characters(ch, start, length);
         }
     }
 
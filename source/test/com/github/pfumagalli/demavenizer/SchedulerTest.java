@@ -0,0 +1,72 @@
+package com.github.pfumagalli.demavenizer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.github.pfumagalli.demavenizer.ivy.Mapper;
+import com.github.pfumagalli.demavenizer.maven.Repository;
+
+public class SchedulerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Translator translator;
+
+    /* A local repository where "t#broken" depends on an unversioned artifact nobody has */
+    @BeforeClass
+    public void setup()
+    throws IOException, URISyntaxException {
+        final File directory = Files.createTempDirectory("scheduler").toFile();
+        final File repository = new File(directory, "repository");
+        final File library = new File(directory, "library");
+        final File mappings = new File(directory, "mappings.properties");
+        if (!library.mkdirs()) throw new IOException("Unable to create " + library);
+        Files.write(mappings.toPath(), new byte[0]);
+
+        pom(repository, "leaf", "");
+        pom(repository, "broken", "<dependency><groupId>t</groupId><artifactId>nowhere</artifactId></dependency>");
+
+        final Configuration configuration = new Configuration();
+        configuration.put("library.dir", library.getPath());
+        translator = new Translator(configuration, new Repository(repository.toURI()), new Mapper(library, mappings));
+    }
+
+    private static void pom(File directory, String artifact, String dependencies)
+    throws IOException {
+        final File file = new File(directory, "t/" + artifact + "/1/" + artifact + "-1.pom");
+        if (!file.getParentFile().mkdirs()) throw new IOException("Unable to create " + file.getParentFile());
+        final String pom = "<project><groupId>t</groupId><artifactId>" + artifact + "</artifactId><version>1</version>" +
+                           "<dependencies>" + dependencies + "</dependencies></project>";
+        Files.write(file.toPath(), pom.getBytes(UTF8));
+    }
+
+    /* ====================================================================== */
+
+    @Test
+    public void testUnresolvableDependency()
+    throws InterruptedException {
+        final List<String[]> entries = new ArrayList<>();
+        entries.add(new String[] { "t#broken#1" });
+        entries.add(new String[] { "t#leaf#1" });
+
+        /* The broken entry fails on its own, the rest of the run goes on */
+        final List<Scheduler.Result> results = new Scheduler(translator, 2).translateTransitively(entries, false);
+        assertEquals(results.size(), 2, "Wrong number of results");
+        assertEquals(results.get(0).getMavenId(), "t#broken#1");
+        assertFalse(results.get(0).isSuccessful(), "Unresolvable dependency did not fail");
+        assertEquals(results.get(1).getMavenId(), "t#leaf#1");
+        assertTrue(results.get(1).isSuccessful(), "Independent entry failed: " + results.get(1).getFailure());
+    }
+}
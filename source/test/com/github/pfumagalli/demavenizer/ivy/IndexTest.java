@@ -0,0 +1,106 @@
+package com.github.pfumagalli.demavenizer.ivy;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class IndexTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final List<Index.Entry> entries = Arrays.asList(
+        new Index.Entry("g/a/1.0/ivy.xml", 1000L, 123L, "g#a#1.0", "g", "a", "1.0"),
+        new Index.Entry("g/b/2.0/ivy.xml", 2000L, 456L, null, "g", "b", "2.0"),
+        new Index.Entry("broken/ivy.xml", 3000L, 0L, null, null, null, null));
+
+    private File temporary()
+    throws IOException {
+        final File file = File.createTempFile("index", ".tmp");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private void assertEntry(Index.Entry entry, Index.Entry expected) {
+        assertNotNull(entry, "Missing entry for " + expected.path);
+        assertEquals(entry.path, expected.path, "Wrong path");
+        assertEquals(entry.modified, expected.modified, "Wrong modification time for " + expected.path);
+        assertEquals(entry.size, expected.size, "Wrong size for " + expected.path);
+        assertEquals(entry.maven, expected.maven, "Wrong maven id for " + expected.path);
+        assertEquals(entry.organisation, expected.organisation, "Wrong organisation for " + expected.path);
+        assertEquals(entry.module, expected.module, "Wrong module for " + expected.path);
+        assertEquals(entry.revision, expected.revision, "Wrong revision for " + expected.path);
+    }
+
+    @Test
+    public void testStoreLoad()
+    throws IOException {
+        final File file = temporary();
+        Index.store(file, entries);
+
+        final Map<String, Index.Entry> loaded = Index.load(file);
+        assertEquals(loaded.size(), entries.size(), "Wrong number of entries");
+        for (final Index.Entry entry: entries) assertEntry(loaded.get(entry.path), entry);
+    }
+
+    @Test
+    public void testMissing()
+    throws IOException {
+        final File file = temporary();
+        assertTrue(file.delete(), "Unable to delete " + file);
+        assertTrue(Index.load(file).isEmpty(), "Missing index not empty");
+        assertTrue(Index.load(null).isEmpty(), "Null index not empty");
+    }
+
+    @Test
+    public void testOutdated()
+    throws IOException {
+        final File file = temporary();
+        Files.write(file.toPath(), "# demavenizer library index 0\ng/a/1.0/ivy.xml\t1000\t123\tg#a#1.0\tg\ta\t1.0\n".getBytes(UTF8));
+        assertTrue(Index.load(file).isEmpty(), "Outdated index not empty");
+    }
+
+    @Test
+    public void testTruncated()
+    throws IOException {
+        final File file = temporary();
+        Index.store(file, entries);
+        final byte bytes[] = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 10));
+        assertTrue(Index.load(file).isEmpty(), "Truncated index not empty");
+    }
+
+    @Test
+    public void testCorrupted()
+    throws IOException {
+        final File file = temporary();
+        Index.store(file, entries);
+        final String index = new String(Files.readAllBytes(file.toPath()), UTF8);
+        Files.write(file.toPath(), index.replace("\t2000\t", "\ttwo\t").getBytes(UTF8));
+        assertTrue(Index.load(file).isEmpty(), "Corrupted index not empty");
+    }
+
+    @Test
+    public void testGeneration() {
+        final long generation = Index.generation(entries);
+        assertEquals(Index.generation(Arrays.asList(entries.get(0), entries.get(1), entries.get(2))), generation, "Same entries, different generation");
+
+        /* Any change in any entry is a new generation */
+        assertTrue(Index.generation(entries.subList(0, 2)) != generation, "Removed entry, same generation");
+        assertTrue(Index.generation(Arrays.asList(entries.get(0), entries.get(1), entries.get(2),
+                                                  new Index.Entry("g/c/1.0/ivy.xml", 0L, 0L, null, "g", "c", "1.0"))) != generation,
+                   "Added entry, same generation");
+        assertTrue(Index.generation(Arrays.asList(new Index.Entry("g/a/1.0/ivy.xml", 1001L, 123L, "g#a#1.0", "g", "a", "1.0"),
+                                                  entries.get(1), entries.get(2))) != generation,
+                   "Modified entry, same generation");
+    }
+}
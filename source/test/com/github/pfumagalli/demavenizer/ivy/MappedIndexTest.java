@@ -0,0 +1,127 @@
+package com.github.pfumagalli.demavenizer.ivy;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import org.testng.annotations.Test;
+
+import com.github.pfumagalli.demavenizer.maven.Identifier;
+
+public class MappedIndexTest {
+
+    private static final long GENERATION = 0x123456789ABCDEFL;
+
+    private final Map<Identifier, Marker> mappings = new HashMap<>();
+    private final Map<Identifier, Marker> latest = new HashMap<>();
+
+    public MappedIndexTest() {
+        for (final Marker marker: new Marker[] {
+            new Marker(new Identifier("g#a#1.0"), "g", "a", "1.0"),
+            new Marker(new Identifier("g#a#2.0"), "g", "a", "2.0"),
+            new Marker(new Identifier("g#a#10.0"), "org.g", "a", "10.0-final"),
+            new Marker(new Identifier("g#b"), "other", "bee", "3"),
+            new Marker(new Identifier("h.i#j#1.0-SNAPSHOT"), "h", "j", "1.0-SNAPSHOT")
+        }) mappings.put(marker.getIdentifier(), marker);
+        latest.put(new Identifier("g#a"), mappings.get(new Identifier("g#a#10.0")));
+        latest.put(new Identifier("g#b"), mappings.get(new Identifier("g#b")));
+        latest.put(new Identifier("h.i#j"), mappings.get(new Identifier("h.i#j#1.0-SNAPSHOT")));
+    }
+
+    private File write()
+    throws IOException {
+        final File file = File.createTempFile("index", ".map");
+        file.deleteOnExit();
+        MappedIndex.write(file, GENERATION, mappings, latest);
+        return file;
+    }
+
+    @Test
+    public void testWriteOpen()
+    throws IOException {
+        final MappedIndex index = MappedIndex.open(write(), GENERATION);
+        assertNotNull(index, "Unable to open index");
+        assertEquals(index.size(), mappings.size(), "Wrong number of mappings");
+        assertEquals(index.getMappings(), mappings, "Wrong mappings");
+
+        for (final Marker marker: mappings.values())
+            assertEquals(index.get(marker.getIdentifier()), marker, "Wrong mapping for " + marker.getIdentifier().asString());
+        assertNull(index.get(new Identifier("g#a#3.0")), "Unknown version mapped");
+        assertNull(index.get(new Identifier("g#a")), "Unversioned identifier mapped");
+        assertNull(index.get(new Identifier("x#y#1.0")), "Unknown identifier mapped");
+
+        for (final Map.Entry<Identifier, Marker> entry: latest.entrySet())
+            assertEquals(index.getLatest(entry.getKey()), entry.getValue(), "Wrong latest for " + entry.getKey().asString());
+        assertNull(index.getLatest(new Identifier("x#y")), "Unknown latest mapped");
+
+        final NavigableMap<Revision, Marker> maven = index.getRevisions(new Identifier("g#a"));
+        assertEquals(maven.size(), 3, "Wrong number of Maven revisions");
+        assertEquals(maven.lastEntry().getValue(), mappings.get(new Identifier("g#a#10.0")), "Wrong latest Maven revision");
+
+        final NavigableMap<Revision, Marker> ivy = index.getRevisions("g", "a");
+        assertEquals(ivy.size(), 2, "Wrong number of Ivy revisions");
+        assertEquals(ivy.firstEntry().getValue(), mappings.get(new Identifier("g#a#1.0")), "Wrong first Ivy revision");
+        assertEquals(index.getRevisions("other", "bee").size(), 1, "Wrong number of Ivy revisions");
+        assertEquals(index.getRevisions("x", "y").size(), 0, "Unknown Ivy module mapped");
+    }
+
+    @Test
+    public void testStale()
+    throws IOException {
+        final File file = write();
+        assertNotNull(MappedIndex.open(file, GENERATION), "Unable to open index");
+        assertNull(MappedIndex.open(file, GENERATION + 1), "Opened index from another generation");
+    }
+
+    @Test
+    public void testMissing()
+    throws IOException {
+        final File file = write();
+        Files.delete(file.toPath());
+        assertNull(MappedIndex.open(file, GENERATION), "Opened missing index");
+    }
+
+    @Test
+    public void testTruncated()
+    throws IOException {
+        final File file = write();
+        final byte bytes[] = Files.readAllBytes(file.toPath());
+        for (final int length: new int[] { 0, 4, 16, 31, 32, bytes.length / 2, bytes.length - 1 }) {
+            Files.write(file.toPath(), Arrays.copyOf(bytes, length));
+            assertNull(MappedIndex.open(file, GENERATION), "Opened index truncated at " + length + " bytes");
+        }
+    }
+
+    @Test
+    public void testCorrupted()
+    throws IOException {
+        final File file = write();
+        final byte bytes[] = Files.readAllBytes(file.toPath());
+
+        /* Trailing garbage */
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length + 4));
+        assertNull(MappedIndex.open(file, GENERATION), "Opened index with trailing bytes");
+
+        /* Wrong magic, or version */
+        for (final int position: new int[] { 0, 7 }) {
+            final byte corrupted[] = bytes.clone();
+            corrupted[position] ^= 0xFF;
+            Files.write(file.toPath(), corrupted);
+            assertNull(MappedIndex.open(file, GENERATION), "Opened index corrupted at " + position);
+        }
+
+        /* More records than there is room for */
+        final byte corrupted[] = bytes.clone();
+        corrupted[20] = 0x7F;
+        Files.write(file.toPath(), corrupted);
+        assertNull(MappedIndex.open(file, GENERATION), "Opened index with too many records");
+    }
+}
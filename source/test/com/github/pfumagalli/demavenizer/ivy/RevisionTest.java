@@ -0,0 +1,107 @@
+package com.github.pfumagalli.demavenizer.ivy;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class RevisionTest {
+
+    /* Same as Maven's own ComparableVersion tests, in ascending order */
+    private static final String QUALIFIED[] = {
+        "1-alpha2snapshot", "1-alpha2", "1-alpha-123", "1-beta-2", "1-beta123", "1-m2", "1-m11", "1-rc", "1-cr2",
+        "1-rc123", "1-SNAPSHOT", "1", "1-sp", "1-sp2", "1-sp123", "1-abc", "1-def", "1-pom-1", "1-1-snapshot",
+        "1-1", "1-2", "1-123"
+    };
+
+    private static final String NUMBERED[] = {
+        "2.0", "2-1", "2.0.a", "2.0.0.a", "2.0.2", "2.0.123", "2.1.0", "2.1-a", "2.1b", "2.1-c", "2.1-1", "2.1.0.1",
+        "2.2", "2.123", "11.a2", "11.a11", "11.b2", "11.b11", "11.m2", "11.m11", "11", "11.a", "11b", "11c", "11m"
+    };
+
+    private void assertOrder(String versions[]) {
+        for (int x = 0; x < versions.length; x ++) {
+            final Revision low = new Revision(versions[x]);
+            for (int y = x + 1; y < versions.length; y ++) {
+                final Revision high = new Revision(versions[y]);
+                assertTrue(low.compareTo(high) < 0, versions[x] + " should be lower than " + versions[y]);
+                assertTrue(high.compareTo(low) > 0, versions[y] + " should be higher than " + versions[x]);
+            }
+        }
+    }
+
+    private void assertSame(String version1, String version2) {
+        final Revision revision1 = new Revision(version1);
+        final Revision revision2 = new Revision(version2);
+        assertEquals(revision1.compareTo(revision2), 0, version1 + " should be the same as " + version2);
+        assertEquals(revision2.compareTo(revision1), 0, version2 + " should be the same as " + version1);
+        assertEquals(revision1, revision2, version1 + " should equal " + version2);
+        assertEquals(revision1.hashCode(), revision2.hashCode(), version1 + " should hash like " + version2);
+    }
+
+    @Test
+    public void testQualifiers() {
+        assertOrder(QUALIFIED);
+    }
+
+    @Test
+    public void testNumbers() {
+        assertOrder(NUMBERED);
+    }
+
+    @Test
+    public void testEquivalence() {
+        assertSame("1", "1.0");
+        assertSame("1", "1.0.0");
+        assertSame("1", "1-0");
+        assertSame("1.0", "1.0-0");
+        assertSame("1a", "1-a");
+        assertSame("1a", "1.0.0-a");
+        assertSame("1ga", "1");
+        assertSame("1release", "1");
+        assertSame("1final", "1");
+        assertSame("1.0.0.Final", "1");
+        assertSame("1cr", "1rc");
+        assertSame("1a1", "1-alpha-1");
+        assertSame("1b2", "1-beta-2");
+        assertSame("1m3", "1-milestone-3");
+        assertSame("1X", "1x");
+        assertSame("1.0-SNAPSHOT", "1-snapshot");
+    }
+
+    @Test
+    public void testOddities() {
+        assertOrder(new String[] { "2.0a1", "2.0b3", "2.0rc1", "2.0", "2.0.1" });
+        assertOrder(new String[] { "20040616", "20100101", "99999999999999999999" });
+        assertOrder(new String[] { "1.9", "1.10", "1.010.1" });
+    }
+
+    @Test
+    public void testListComparedToNothing() {
+        /* Like Maven, only the first item of a trailing list counts against nothing */
+        final Revision one = new Revision("1");
+        final Revision first = new Revision("1-0.1");
+        final Revision second = new Revision("1-0.2");
+        assertEquals(first.compareTo(one), 0, "1-0.1 should compare the same as 1");
+        assertEquals(one.compareTo(first), 0, "1 should compare the same as 1-0.1");
+        assertEquals(second.compareTo(one), 0, "1-0.2 should compare the same as 1");
+        assertTrue(first.compareTo(second) < 0, "1-0.1 should be lower than 1-0.2");
+
+        /* Not transitive, so not equal */
+        assertFalse(first.equals(one), "1-0.1 should not equal 1");
+        assertFalse(one.equals(first), "1 should not equal 1-0.1");
+        assertFalse(first.equals(second), "1-0.1 should not equal 1-0.2");
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals(new Revision("1.0.0.Final").toString(), "1.0.0.Final");
+        assertEquals(new Revision(" 2.0-SNAPSHOT ").toString(), "2.0-SNAPSHOT");
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void testEmpty() {
+        new Revision(" ");
+    }
+}
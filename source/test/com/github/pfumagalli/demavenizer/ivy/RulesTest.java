@@ -0,0 +1,146 @@
+package com.github.pfumagalli.demavenizer.ivy;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.github.pfumagalli.demavenizer.maven.Identifier;
+
+public class RulesTest {
+
+    private void assertApply(Rules rules, String identifier, String expected) {
+        final Identifier applied = rules.apply(new Identifier(identifier));
+        assertEquals(applied.asString(), expected, "Wrong mapping for \"" + identifier + "\"");
+    }
+
+    @Test
+    public void testExact() {
+        final Rules rules = new Rules();
+        rules.add("g#a#1.0", "h#b#2.0");
+        rules.add("g#c", "h#d#3.0");
+        rules.add("g#e", "h#f");
+        rules.freeze();
+
+        assertApply(rules, "g#a#1.0", "h#b#2.0");
+        assertApply(rules, "g#a#1.1", "g#a#1.1");
+        assertApply(rules, "g#c#1.0", "h#d#3.0");
+        assertApply(rules, "g#e#1.0", "h#f");
+        assertApply(rules, "x#y#1.0", "x#y#1.0");
+    }
+
+    @Test
+    public void testPrecedence() {
+        final Rules rules = new Rules();
+        rules.add("org.*#*", "any#*#*");
+        rules.add("org.eclipse.*#*", "eclipse#*#*");
+        rules.add("org.eclipse.*#jetty-*", "jetty#*#*");
+        rules.add("org.eclipse.*#jetty-util*", "util#*#*");
+        rules.add("org.eclipse.jetty#*", "exact#*#*");
+        rules.add("org.eclipse.jetty#jetty-?ttp", "http#*#*");
+        rules.add("org.eclipse.jetty#jetty-io", "literal#io#*");
+        rules.add("org.eclipse.jetty#jetty-io#1.0", "exact#io#1.0");
+        rules.freeze();
+
+        /* Exact mappings first, then literal artifacts, then the longest globs */
+        assertApply(rules, "org.eclipse.jetty#jetty-io#1.0", "exact#io#1.0");
+        assertApply(rules, "org.eclipse.jetty#jetty-io#2.0", "literal#io#2.0");
+        assertApply(rules, "org.eclipse.jetty#jetty-http#2.0", "http#jetty-http#2.0");
+        assertApply(rules, "org.eclipse.jetty#jetty-util#2.0", "exact#jetty-util#2.0");
+
+        /* Exact groups before prefixes, deeper prefixes before shallower ones */
+        assertApply(rules, "org.eclipse.jetty.http2#jetty-util-ajax#2.0", "util#jetty-util-ajax#2.0");
+        assertApply(rules, "org.eclipse.jetty.http2#jetty-http#2.0", "jetty#jetty-http#2.0");
+        assertApply(rules, "org.eclipse.jetty.http2#http2-common#2.0", "eclipse#http2-common#2.0");
+        assertApply(rules, "org.apache#commons-io#2.0", "any#commons-io#2.0");
+
+        /* Prefixes only match groups below them */
+        assertApply(rules, "org#foo#1.0", "org#foo#1.0");
+        assertApply(rules, "org.eclipse#foo#1.0", "any#foo#1.0");
+    }
+
+    @Test
+    public void testGlobBuckets() {
+        final Rules rules = new Rules();
+        rules.add("g#*", "any#*#*");
+        rules.add("g#a*", "a#*#*");
+        rules.add("g#ab*c", "abc#*#*");
+        rules.add("g#abc*", "abcx#*#*");
+        rules.add("g#*cd", "cd#*#*");
+        rules.freeze();
+
+        assertApply(rules, "g#x#1", "any#x#1");
+        assertApply(rules, "g#a#1", "a#a#1");
+        assertApply(rules, "g#abxc#1", "abc#abxc#1");
+        assertApply(rules, "g#abcd#1", "abcx#abcd#1");
+        assertApply(rules, "g#xbcd#1", "cd#xbcd#1");
+        assertApply(rules, "g#abxd#1", "a#abxd#1");
+    }
+
+    @Test
+    public void testVersionRanges() {
+        final Rules rules = new Rules();
+        rules.add("g#a#[1.0,2.0)", "old#a#*");
+        rules.add("g#a#[2.0,]", "new#a#*");
+        rules.add("g#a#(,1.0)", "ancient#a#*");
+        rules.add("g#b#(1.0,2.0]", "mid#b#*");
+        rules.add("g#*#[3.0]", "three#*#*");
+        rules.freeze();
+
+        assertApply(rules, "g#a#0.9", "ancient#a#0.9");
+        assertApply(rules, "g#a#1.0", "old#a#1.0");
+        assertApply(rules, "g#a#1.9.9", "old#a#1.9.9");
+        assertApply(rules, "g#a#2.0", "new#a#2.0");
+        assertApply(rules, "g#a#10.0", "new#a#10.0");
+        assertApply(rules, "g#b#1.0", "g#b#1.0");
+        assertApply(rules, "g#b#1.5", "mid#b#1.5");
+        assertApply(rules, "g#b#2.0", "mid#b#2.0");
+        assertApply(rules, "g#b#2.0.1", "g#b#2.0.1");
+        assertApply(rules, "g#c#3.0", "three#c#3.0");
+        assertApply(rules, "g#c#3", "three#c#3");
+
+        /* Ranges never match unversioned identifiers */
+        assertApply(rules, "g#a", "g#a");
+    }
+
+    @Test
+    public void testUnversionedTargets() {
+        final Rules rules = new Rules();
+        rules.add("g#a#1.0", "h#a#1.0");
+        rules.add("h#a", "i#a");
+        rules.add("j.*#*", "k#*");
+        rules.add("l#*#[1.0,2.0)", "m#l");
+        rules.freeze();
+
+        /* Exact first, then again unversioned on the result */
+        assertApply(rules, "g#a#1.0", "i#a");
+        assertApply(rules, "j.x#y#1.0", "k#y");
+        assertApply(rules, "l#z#1.5", "m#l");
+        assertApply(rules, "l#z#2.0", "l#z#2.0");
+    }
+
+    @Test
+    public void testVersionedBeforeUnversioned() {
+        final Rules rules = new Rules();
+        rules.add("g#a*", "any#*#*");
+        rules.add("g#*#[1.0]", "one#*#*");
+        rules.freeze();
+
+        assertApply(rules, "g#ab#1.0", "one#ab#1.0");
+        assertApply(rules, "g#ab#2.0", "any#ab#2.0");
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void testInvalidTarget() {
+        new Rules().add("g#a*", "h#b*");
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void testInvalidRange() {
+        new Rules().add("g#a#[1.0,2.0", "h#b");
+    }
+
+    @Test(expectedExceptions=IllegalStateException.class)
+    public void testFrozen() {
+        new Rules().freeze().add("g#a", "h#b");
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.pfumagalli.demavenizer.maven;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ProjectTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Repository repository;
+
+    /* A tiny local repository: "t#child" inherits from "t#parent", and imports BOMs */
+    @BeforeClass
+    public void setup()
+    throws IOException {
+        final File directory = Files.createTempDirectory("repository").toFile();
+
+        pom(directory, "bom2", "",
+            managed("g", "a", "3-bom2") + managed("g", "b", "3-bom2") + managed("g", "c", "3-bom2") + managed("g", "d", "3-bom2"),
+            "");
+        pom(directory, "bom", "",
+            managed("g", "a", "2-bom") + managed("g", "b", "2-bom") + managed("g", "c", "2-bom") + imported("t", "bom2", "1"),
+            "");
+        pom(directory, "bom3", "",
+            managed("g", "c", "4-bom3") + managed("g", "f", "4-bom3"),
+            "");
+        pom(directory, "parent", "",
+            managed("g", "a", "1-parent") + managed("g", "b", "1-parent") + managed("g", "e", "1-parent"),
+            "");
+        pom(directory, "child",
+            "<parent><groupId>t</groupId><artifactId>parent</artifactId><version>1</version></parent>" +
+            "<properties><own.version>0-own</own.version></properties>",
+            managed("g", "a", "${own.version}") + imported("t", "bom", "1") + imported("t", "bom3", "1"),
+            dependency("g", "a", null) + dependency("g", "b", null) + dependency("g", "c", null) +
+            dependency("g", "d", null) + dependency("g", "e", "5-explicit") + dependency("g", "f", null));
+
+        repository = new Repository(directory.toURI());
+    }
+
+    private static void pom(File directory, String artifact, String header, String management, String dependencies)
+    throws IOException {
+        final File file = new File(directory, "t/" + artifact + "/1/" + artifact + "-1.pom");
+        if (!file.getParentFile().mkdirs()) throw new IOException("Unable to create " + file.getParentFile());
+        final String pom = "<project><groupId>t</groupId><artifactId>" + artifact + "</artifactId><version>1</version>" + header +
+                           "<dependencyManagement><dependencies>" + management + "</dependencies></dependencyManagement>" +
+                           "<dependencies>" + dependencies + "</dependencies></project>";
+        Files.write(file.toPath(), pom.getBytes(UTF8));
+    }
+
+    private static String managed(String group, String artifact, String version) {
+        return dependency(group, artifact, version);
+    }
+
+    private static String imported(String group, String artifact, String version) {
+        return "<dependency><groupId>" + group + "</groupId><artifactId>" + artifact + "</artifactId>" +
+               "<version>" + version + "</version><type>pom</type><scope>import</scope></dependency>";
+    }
+
+    private static String dependency(String group, String artifact, String version) {
+        return "<dependency><groupId>" + group + "</groupId><artifactId>" + artifact + "</artifactId>" +
+               (version == null ? "" : "<version>" + version + "</version>") + "</dependency>";
+    }
+
+    /* ====================================================================== */
+
+    @Test
+    public void testManagedVersions() {
+        final Project child = repository.getProject(new Identifier("t#child#1"));
+
+        /* Our own first, then our parent's, then imported BOMs in order, then what those import */
+        assertEquals(child.getManagedVersion(new Identifier("g#a")), "0-own", "Own managed version not first");
+        assertEquals(child.getManagedVersion(new Identifier("g#b")), "1-parent", "Parent managed version not before BOMs");
+        assertEquals(child.getManagedVersion(new Identifier("g#c#9")), "2-bom", "First imported BOM not first");
+        assertEquals(child.getManagedVersion(new Identifier("g#d")), "3-bom2", "BOM imported by BOM not managed");
+        assertEquals(child.getManagedVersion(new Identifier("g#e")), "1-parent", "Parent managed version missing");
+        assertEquals(child.getManagedVersion(new Identifier("g#f")), "4-bom3", "Second imported BOM not managed");
+        assertNull(child.getManagedVersion(new Identifier("g#x")), "Unknown artifact managed");
+
+        /* Flattened the same way */
+        final Map<Identifier, String> expected = new HashMap<>();
+        expected.put(new Identifier("g#a"), "0-own");
+        expected.put(new Identifier("g#b"), "1-parent");
+        expected.put(new Identifier("g#c"), "2-bom");
+        expected.put(new Identifier("g#d"), "3-bom2");
+        expected.put(new Identifier("g#e"), "1-parent");
+        expected.put(new Identifier("g#f"), "4-bom3");
+        assertEquals(child.getManagedVersions(), expected, "Wrong flattened managed versions");
+    }
+
+    @Test
+    public void testDependencyVersions() {
+        final Project child = repository.getProject(new Identifier("t#child#1"));
+
+        final Map<String, String> versions = new HashMap<>();
+        for (final Dependency dependency: child.getDependencies())
+            versions.put(dependency.getArtifactId(), dependency.getVersion());
+
+        assertEquals(versions.get("a"), "0-own", "Wrong version for g#a");
+        assertEquals(versions.get("b"), "1-parent", "Wrong version for g#b");
+        assertEquals(versions.get("c"), "2-bom", "Wrong version for g#c");
+        assertEquals(versions.get("d"), "3-bom2", "Wrong version for g#d");
+        assertEquals(versions.get("e"), "5-explicit", "Explicit version not over managed one");
+        assertEquals(versions.get("f"), "4-bom3", "Wrong version for g#f");
+    }
+
+    @Test
+    public void testBomInBom() {
+        final Map<Identifier, String> bom = repository.getManagedVersions(new Identifier("t#bom#1"));
+        assertEquals(bom.get(new Identifier("g#a")), "2-bom", "Importing BOM not over imported one");
+        assertEquals(bom.get(new Identifier("g#d")), "3-bom2", "BOM imported by BOM not managed");
+        assertEquals(bom.size(), 4, "Wrong number of managed versions");
+    }
+}
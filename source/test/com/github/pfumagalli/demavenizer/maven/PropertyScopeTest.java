@@ -0,0 +1,86 @@
+package com.github.pfumagalli.demavenizer.maven;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class PropertyScopeTest {
+
+    @Test
+    public void testShadowing() {
+        final PropertyScope parent = new PropertyScope(null);
+        parent.put("a", "parent-a");
+        parent.put("b", "parent-b");
+        parent.put("n", "parent-n");
+        parent.freeze();
+
+        final PropertyScope child = new PropertyScope(parent);
+        assertEquals(child.put("a", "child-a"), "parent-a", "Wrong previous value");
+        child.put("c", "child-c");
+        child.put("n", null);
+
+        assertEquals(child.get("a"), "child-a", "Child not shadowing parent");
+        assertEquals(child.get("b"), "parent-b", "Parent not visible from child");
+        assertEquals(child.get("c"), "child-c", "Child value missing");
+        assertNull(child.get("n"), "Null child value not shadowing parent");
+        assertTrue(child.containsKey("n"), "Null child value not contained");
+        assertFalse(child.containsKey("x"), "Unknown key contained");
+        assertEquals(child.size(), 4, "Wrong number of properties");
+
+        /* The parent never sees its children */
+        assertEquals(parent.get("a"), "parent-a", "Parent modified by child");
+        assertFalse(parent.containsKey("c"), "Child value visible from parent");
+    }
+
+    @Test(expectedExceptions=IllegalStateException.class)
+    public void testFrozen() {
+        new PropertyScope(null).freeze().put("a", "b");
+    }
+
+    @Test(expectedExceptions=IllegalStateException.class)
+    public void testParentNotFrozen() {
+        new PropertyScope(new PropertyScope(null));
+    }
+
+    @Test
+    public void testFlattening() {
+        /* Each level shadows one key of all of its ancestors, and adds one */
+        PropertyScope scope = null;
+        for (int depth = 0; depth < 10; depth ++) {
+            scope = new PropertyScope(scope);
+            scope.put("level", depth);
+            scope.put("key" + depth, "value" + depth);
+            if (depth % 3 == 0) scope.put("null" + depth, null);
+            if (depth > 0) scope.put("key" + (depth - 1), "shadowed" + depth);
+
+            /* Lookups before freezing walk the chain, after they hit the flattened copy */
+            final Map<String, Object> walked = new HashMap<>();
+            for (int key = 0; key <= depth + 1; key ++) {
+                for (final String name: new String[] { "level", "key" + key, "null" + key }) {
+                    walked.put(name, scope.get(name));
+                    walked.put(name + "?", scope.containsKey(name));
+                }
+            }
+            final Map<String, Object> copy = new HashMap<>(scope);
+
+            scope.freeze();
+            for (final Map.Entry<String, Object> entry: walked.entrySet()) {
+                final String name = entry.getKey();
+                final Object value = name.endsWith("?") ? scope.containsKey(name.substring(0, name.length() - 1)) : scope.get(name);
+                assertEquals(value, entry.getValue(), "Wrong \"" + name + "\" at depth " + (depth + 1));
+            }
+            assertEquals(new HashMap<>(scope), copy, "Wrong properties at depth " + (depth + 1));
+        }
+
+        assertEquals(scope.get("level"), 9, "Wrong level");
+        assertEquals(scope.get("key0"), "shadowed1", "Wrong shadowed value");
+        assertEquals(scope.get("key9"), "value9", "Wrong own value");
+        assertTrue(scope.containsKey("null0"), "Null value lost");
+    }
+}
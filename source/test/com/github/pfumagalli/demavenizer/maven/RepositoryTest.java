@@ -0,0 +1,153 @@
+package com.github.pfumagalli.demavenizer.maven;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.github.pfumagalli.demavenizer.Workers;
+import com.github.pfumagalli.demavenizer.parser.Node;
+
+public class RepositoryTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int THREADS = 16;
+
+    private File directory;
+
+    @BeforeClass
+    public void setup()
+    throws IOException {
+        directory = Files.createTempDirectory("repository").toFile();
+        pom("root", null);
+        pom("middle", "root");
+        pom("leaf", "middle");
+        pom("self", "self");
+        pom("cycle1", "cycle2");
+        pom("cycle2", "cycle1");
+    }
+
+    private void pom(String artifact, String parent)
+    throws IOException {
+        final File file = new File(directory, "t/" + artifact + "/1/" + artifact + "-1.pom");
+        if (!file.getParentFile().mkdirs()) throw new IOException("Unable to create " + file.getParentFile());
+        final String pom = "<project><groupId>t</groupId><artifactId>" + artifact + "</artifactId><version>1</version>" +
+                           (parent == null ? "" : "<parent><groupId>t</groupId><artifactId>" + parent + "</artifactId><version>1</version></parent>") +
+                           "</project>";
+        Files.write(file.toPath(), pom.getBytes(UTF8));
+    }
+
+    /* Counts how many times each POM gets parsed, slowly, so that everyone asks while it's loading */
+    private static final class CountingCache extends Cache {
+
+        private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+        private CountingCache(File directory) {
+            super(directory);
+        }
+
+        @Override
+        public Node parse(URI base, String path, boolean immutable) {
+            counts.putIfAbsent(path, new AtomicInteger());
+            counts.get(path).incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return super.parse(base, path, immutable);
+        }
+
+        private int count(String artifact) {
+            final AtomicInteger count = counts.get("t/" + artifact + "/1/" + artifact + "-1.pom");
+            return count == null ? 0 : count.get();
+        }
+    }
+
+    /* Everyone starts at once, nobody may take longer than a few seconds */
+    private List<Object> concurrently(final Repository repository, String... identifiers)
+    throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Project>> futures = new ArrayList<>();
+        for (final String identifier: identifiers) {
+            futures.add(Workers.executor().submit(new Callable<Project>() {
+                @Override
+                public Project call()
+                throws InterruptedException {
+                    start.await();
+                    return repository.getProject(new Identifier(identifier));
+                }
+            }));
+        }
+        start.countDown();
+
+        final List<Object> results = new ArrayList<>();
+        for (final Future<Project> future: futures) try {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        } catch (final ExecutionException exception) {
+            results.add(exception.getCause());
+        } catch (final TimeoutException exception) {
+            throw new AssertionError("Deadlocked loading projects");
+        }
+        return results;
+    }
+
+    /* ====================================================================== */
+
+    @Test
+    public void testLoadedOnce()
+    throws InterruptedException {
+        final CountingCache cache = new CountingCache(directory);
+        final Repository repository = new Repository(directory.toURI(), cache);
+
+        final String identifiers[] = new String[THREADS];
+        for (int x = 0; x < THREADS; x ++) identifiers[x] = x % 2 == 0 ? "t#leaf#1" : "t#middle#1";
+        final List<Object> results = concurrently(repository, identifiers);
+
+        for (int x = 0; x < THREADS; x ++) {
+            assertTrue(results.get(x) instanceof Project, "Failed loading " + identifiers[x] + ": " + results.get(x));
+            assertSame(results.get(x), results.get(x % 2), "Different instances of " + identifiers[x]);
+        }
+        assertEquals(cache.count("leaf"), 1, "Leaf parsed more than once");
+        assertEquals(cache.count("middle"), 1, "Middle parsed more than once");
+        assertEquals(cache.count("root"), 1, "Root parsed more than once");
+    }
+
+    @Test
+    public void testSelfReference()
+    throws InterruptedException {
+        final Repository repository = new Repository(directory.toURI(), new CountingCache(directory));
+        final Object result = concurrently(repository, "t#self#1").get(0);
+        assertTrue(result instanceof IllegalStateException, "Self reference did not fail: " + result);
+    }
+
+    @Test
+    public void testCycle()
+    throws InterruptedException {
+        final Repository repository = new Repository(directory.toURI(), new CountingCache(directory));
+        for (final Object result: concurrently(repository, "t#cycle1#1", "t#cycle2#1", "t#cycle1#1", "t#cycle2#1"))
+            assertTrue(result instanceof IllegalStateException, "Cycle did not fail: " + result);
+
+        /* Failures are not remembered */
+        assertTrue(concurrently(repository, "t#cycle1#1").get(0) instanceof IllegalStateException, "Cycle did not fail again");
+    }
+}
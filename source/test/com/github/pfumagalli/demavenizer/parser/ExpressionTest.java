@@ -75,4 +75,11 @@ public class ExpressionTest {
         assertExpression("${bean.subBean.value}", "3.14");
     }
 
+    @Test
+    public void testParsedOnce() {
+        Assert.assertSame(Expression.parse("a${string}b", uri), Expression.parse("a${string}b", uri));
+        Assert.assertNotSame(Expression.parse("a${string}b", uri), Expression.parse("a${string}b", null));
+        assertExpression("a${string}b", "atheStringValueb");
+    }
+
 }